@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev.listener;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.apache.fineract.cn.identity.api.v1.PermittableGroupIds;
+import org.apache.fineract.cn.identity.api.v1.events.ApplicationPermissionEvent;
+import org.apache.fineract.cn.rhythm.api.v1.events.BeatEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.StandardEnvironment;
+
+/**
+ * Throughput of the listener to recorder path, and of the wait lookup, for synthetic identity,
+ * rhythm and accounting events. Run with {@code ./gradlew jmh}; the gc profiler adds the allocation
+ * rate per operation. The dispatched variants add the in-process routing of {@link EventDispatcher}
+ * to the direct handler calls; the broker-side selector evaluation it replaced is not covered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventPathBenchmark {
+
+  private static final int DISTINCT_PAYLOADS = 1024;
+  private static final String TENANT = "playground";
+
+  private IndexedEventRecorder eventRecorder;
+  private EventDispatcher eventDispatcher;
+  private IdentityListener identityListener;
+  private RhythmListener rhythmListener;
+  private AccountingListener accountingListener;
+
+  private String[] permissionPayloads;
+  private String[] beatPayloads;
+  private String[] ledgerPayloads;
+  private BeatEvent[] recordedBeats;
+
+  private final AtomicInteger next = new AtomicInteger();
+  private Path journalDirectory;
+  private EventJournal journal;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final Gson gson = new Gson();
+    this.permissionPayloads = new String[DISTINCT_PAYLOADS];
+    this.beatPayloads = new String[DISTINCT_PAYLOADS];
+    this.ledgerPayloads = new String[DISTINCT_PAYLOADS];
+    this.recordedBeats = new BeatEvent[DISTINCT_PAYLOADS];
+    for (int i = 0; i < DISTINCT_PAYLOADS; i++) {
+      this.permissionPayloads[i] = gson.toJson(new ApplicationPermissionEvent("rhythm-v1", PermittableGroupIds.APPLICATION_SELF_MANAGEMENT + i));
+      this.recordedBeats[i] = new BeatEvent("portfolio-v1", "alignment" + i);
+      this.beatPayloads[i] = gson.toJson(this.recordedBeats[i]);
+      this.ledgerPayloads[i] = gson.toJson(Integer.toString(1000 + i));
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpIteration() throws IOException {
+    this.eventRecorder = new IndexedEventRecorder(0L, 100_000, 20_000, 60L);
+    this.eventDispatcher = new EventDispatcher(new StandardEnvironment(), this.eventRecorder);
+    this.identityListener = new IdentityListener(this.eventRecorder, this.eventDispatcher);
+    this.rhythmListener = new RhythmListener(this.eventRecorder, this.eventDispatcher);
+    this.accountingListener = new AccountingListener(this.eventRecorder, this.eventDispatcher);
+    for (final String beatPayload : this.beatPayloads) {
+      this.rhythmListener.onCreateBeat(TENANT, beatPayload);
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDownIteration() {
+    // the recorder of every iteration runs its own expiry thread
+    this.eventDispatcher.shutdown();
+    this.eventRecorder.shutdown();
+  }
+
+  @Setup(Level.Trial)
+  public void openJournal() throws IOException {
+    this.journalDirectory = Files.createTempDirectory("event-journal");
+    this.journal = EventJournal.open(this.journalDirectory, 64 * 1024 * 1024);
+  }
+
+  @TearDown(Level.Trial)
+  public void closeJournal() throws IOException {
+    this.journal.close();
+    try (final Stream<Path> files = Files.walk(this.journalDirectory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+
+  private int nextIndex() {
+    return this.next.getAndIncrement() & (DISTINCT_PAYLOADS - 1);
+  }
+
+  @Benchmark
+  public void applicationPermissionEvent() throws Exception {
+    this.identityListener.onCreateApplicationPermission(TENANT, this.permissionPayloads[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public void beatEvent() {
+    this.rhythmListener.onCreateBeat(TENANT, this.beatPayloads[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public void stringEvent() {
+    this.accountingListener.onPostLedger(TENANT, this.ledgerPayloads[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public void beatEventDispatched() throws Exception {
+    this.rhythmListener.onEvent(TENANT, org.apache.fineract.cn.rhythm.api.v1.events.EventConstants.POST_BEAT, null, null,
+        this.beatPayloads[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public void applicationPermissionEventDispatched() throws Exception {
+    this.identityListener.onEvent(TENANT, org.apache.fineract.cn.identity.api.v1.events.EventConstants.OPERATION_POST_APPLICATION_PERMISSION, null, null,
+        this.permissionPayloads[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public void journalAppend() throws IOException {
+    this.journal.append(org.apache.fineract.cn.rhythm.api.v1.events.EventConstants.DESTINATION, TENANT,
+        org.apache.fineract.cn.rhythm.api.v1.events.EventConstants.POST_BEAT,
+        this.beatPayloads[this.nextIndex()], System.currentTimeMillis());
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void beatEventContended() {
+    this.rhythmListener.onCreateBeat(TENANT, this.beatPayloads[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public boolean waitForRecordedBeat() throws InterruptedException {
+    return this.eventRecorder.wait(org.apache.fineract.cn.rhythm.api.v1.events.EventConstants.POST_BEAT,
+        this.recordedBeats[this.nextIndex()]);
+  }
+}
@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.fineract.cn.accounting.api.v1.EventConstants;
+import org.apache.fineract.cn.accounting.api.v1.client.AccountAlreadyExistsException;
+import org.apache.fineract.cn.accounting.api.v1.client.LedgerAlreadyExistsException;
+import org.apache.fineract.cn.accounting.api.v1.client.LedgerManager;
+import org.apache.fineract.cn.accounting.api.v1.domain.Account;
+import org.apache.fineract.cn.accounting.api.v1.domain.Ledger;
+import org.apache.fineract.cn.api.context.AutoUserContext;
+import org.apache.fineract.cn.dev.listener.IndexedEventRecorder;
+import org.apache.fineract.cn.lang.AutoTenantContext;
+import org.slf4j.Logger;
+
+/**
+ * Imports a chart of accounts from the ledgers.csv and accounts.csv format of the accounting
+ * importer, with a bounded number of requests in flight. A sub ledger is added as soon as the event
+ * of its parent arrived, so independent sub trees are created side by side. Account rows are read
+ * one at a time and handed to the workers while they are parsed. Every ledger and account is
+ * verified by its own event rather than by the last row of the file: the workers only post, and
+ * the events of up to {@value #VERIFY_CHUNK} posted identifiers are awaited together with
+ * {@link IndexedEventRecorder#waitForAll}. Only parent ledgers are awaited one by one.
+ */
+class ChartOfAccountsImporter {
+
+  private static final int MISSING_REPORTED = 10;
+  // well below the recorded events kept per tenant, so no event is evicted before it is awaited
+  private static final int VERIFY_CHUNK = 1000;
+
+  private final Logger logger;
+  private final IndexedEventRecorder eventRecorder;
+  private final PhaseProfiler profiler;
+  private final LedgerManager ledgerManager;
+  private final String tenantIdentifier;
+  private final String userIdentifier;
+  private final Supplier<String> accessToken;
+  private final int parallelism;
+  private final Map<String, String> ledgerTypes = new ConcurrentHashMap<>();
+
+  ChartOfAccountsImporter(final Logger logger,
+                          final IndexedEventRecorder eventRecorder,
+                          final PhaseProfiler profiler,
+                          final LedgerManager ledgerManager,
+                          final String tenantIdentifier,
+                          final String userIdentifier,
+                          final Supplier<String> accessToken,
+                          final int parallelism) {
+    super();
+    this.logger = logger;
+    this.eventRecorder = eventRecorder;
+    this.profiler = profiler;
+    this.ledgerManager = ledgerManager;
+    this.tenantIdentifier = tenantIdentifier;
+    this.userIdentifier = userIdentifier;
+    this.accessToken = accessToken;
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  void importLedgers(final URL ledgersCsv) throws IOException, InterruptedException {
+    final Map<String, List<Ledger>> children = new HashMap<>();
+    final List<Ledger> roots = new ArrayList<>();
+    final Set<String> expected = new HashSet<>();
+    try (final CSVParser parser = parse(ledgersCsv)) {
+      for (final CSVRecord record : parser) {
+        final Ledger ledger = toLedger(record);
+        expected.add(ledger.getIdentifier());
+        this.ledgerTypes.put(ledger.getIdentifier(), ledger.getType());
+        if (ledger.getParentLedgerIdentifier() == null) {
+          roots.add(ledger);
+        } else {
+          children.computeIfAbsent(ledger.getParentLedgerIdentifier(), key -> new ArrayList<>()).add(ledger);
+        }
+      }
+    }
+
+    final long startedAt = System.nanoTime();
+    final Set<String> verified = ConcurrentHashMap.newKeySet();
+    final Set<String> posted = ConcurrentHashMap.newKeySet();
+    final AtomicReference<Exception> failure = new AtomicReference<>();
+    final ExecutorService executor = Executors.newFixedThreadPool(this.parallelism);
+    // the pool size bounds the requests in flight, children are queued once their parent exists
+    final Phaser pending = new Phaser(1);
+    try {
+      roots.forEach(ledger -> this.submitLedger(executor, pending, ledger, children, verified, posted, failure));
+      pending.awaitAdvanceInterruptibly(pending.arriveAndDeregister());
+    } finally {
+      executor.shutdownNow();
+    }
+    this.awaitPosted(EventConstants.POST_LEDGER, posted, verified);
+    this.verify("ledgers", expected, verified, failure, startedAt);
+  }
+
+  private void submitLedger(final ExecutorService executor,
+                            final Phaser pending,
+                            final Ledger ledger,
+                            final Map<String, List<Ledger>> children,
+                            final Set<String> verified,
+                            final Set<String> posted,
+                            final AtomicReference<Exception> failure) {
+    pending.register();
+    executor.execute(() -> {
+      try {
+        if (failure.get() == null) {
+          final List<Ledger> subLedgers = children.getOrDefault(ledger.getIdentifier(), Collections.emptyList());
+          if (this.inContext(() -> this.createLedger(ledger, !subLedgers.isEmpty()))) {
+            posted.add(ledger.getIdentifier());
+          } else {
+            verified.add(ledger.getIdentifier());
+          }
+          subLedgers.forEach(subLedger -> this.submitLedger(executor, pending, subLedger, children, verified, posted, failure));
+        }
+      } catch (final Exception ex) {
+        this.logger.error("Creating ledger '{}' for tenant '{}' failed.", ledger.getIdentifier(), this.tenantIdentifier, ex);
+        failure.compareAndSet(null, ex);
+      } finally {
+        pending.arriveAndDeregister();
+      }
+    });
+  }
+
+  /**
+   * @return true if the ledger was posted and its event is still to be awaited
+   */
+  private boolean createLedger(final Ledger ledger, final boolean hasSubLedgers) throws InterruptedException {
+    try {
+      if (ledger.getParentLedgerIdentifier() == null) {
+        this.ledgerManager.createLedger(ledger);
+      } else {
+        this.ledgerManager.addSubLedger(ledger.getParentLedgerIdentifier(), ledger);
+      }
+    } catch (final LedgerAlreadyExistsException ex) {
+      // created by an earlier run, there will be no event
+      final Ledger existing = this.ledgerManager.findLedger(ledger.getIdentifier());
+      if (!Objects.equals(existing.getParentLedgerIdentifier(), ledger.getParentLedgerIdentifier())) {
+        throw new IllegalStateException("Ledger '" + ledger.getIdentifier() + "' of tenant '" + this.tenantIdentifier
+            + "' exists under '" + existing.getParentLedgerIdentifier() + "' instead of '" + ledger.getParentLedgerIdentifier() + "'.");
+      }
+      return false;
+    }
+    if (!hasSubLedgers) {
+      return true;
+    }
+    // sub ledgers can only be added once their parent exists
+    this.await(EventConstants.POST_LEDGER, ledger.getIdentifier());
+    return false;
+  }
+
+  void importAccounts(final URL accountsCsv) throws IOException, InterruptedException {
+    final long startedAt = System.nanoTime();
+    final Set<String> expected = new HashSet<>();
+    final Set<String> verified = ConcurrentHashMap.newKeySet();
+    final Set<String> posted = ConcurrentHashMap.newKeySet();
+    final AtomicReference<Exception> failure = new AtomicReference<>();
+    final ExecutorService executor = Executors.newFixedThreadPool(this.parallelism);
+    final Semaphore inFlight = new Semaphore(this.parallelism);
+    try (final CSVParser parser = parse(accountsCsv)) {
+      for (final CSVRecord record : parser) {
+        final Account account = toAccount(record);
+        expected.add(account.getIdentifier());
+        inFlight.acquire();
+        if (failure.get() != null) {
+          inFlight.release();
+          break;
+        }
+        executor.execute(() -> {
+          try {
+            if (this.inContext(() -> this.createAccount(account))) {
+              posted.add(account.getIdentifier());
+            } else {
+              verified.add(account.getIdentifier());
+            }
+          } catch (final Exception ex) {
+            this.logger.error("Creating account '{}' for tenant '{}' failed.", account.getIdentifier(), this.tenantIdentifier, ex);
+            failure.compareAndSet(null, ex);
+          } finally {
+            inFlight.release();
+          }
+        });
+        if (expected.size() % VERIFY_CHUNK == 0) {
+          inFlight.acquire(this.parallelism);
+          this.awaitPosted(EventConstants.POST_ACCOUNT, posted, verified);
+          inFlight.release(this.parallelism);
+        }
+      }
+      inFlight.acquire(this.parallelism);
+      this.awaitPosted(EventConstants.POST_ACCOUNT, posted, verified);
+    } finally {
+      executor.shutdownNow();
+    }
+    this.verify("accounts", expected, verified, failure, startedAt);
+  }
+
+  /**
+   * @return true if the account was posted and its event is still to be awaited
+   */
+  private boolean createAccount(final Account account) {
+    account.setType(this.ledgerType(account.getLedger()));
+    try {
+      this.ledgerManager.createAccount(account);
+    } catch (final AccountAlreadyExistsException ex) {
+      // created by an earlier run, there will be no event
+      final Account existing = this.ledgerManager.findAccount(account.getIdentifier());
+      if (!Objects.equals(existing.getLedger(), account.getLedger())) {
+        throw new IllegalStateException("Account '" + account.getIdentifier() + "' of tenant '" + this.tenantIdentifier
+            + "' exists in ledger '" + existing.getLedger() + "' instead of '" + account.getLedger() + "'.");
+      }
+      return false;
+    }
+    return true;
+  }
+
+  private String ledgerType(final String ledgerIdentifier) {
+    final String known = this.ledgerTypes.get(ledgerIdentifier);
+    if (known != null) {
+      return known;
+    }
+    // looked up outside of the map, so the request does not hold a lock of the map
+    final String type = this.ledgerManager.findLedger(ledgerIdentifier).getType();
+    this.ledgerTypes.putIfAbsent(ledgerIdentifier, type);
+    return type;
+  }
+
+  @FunctionalInterface
+  private interface Request<T> {
+    T run() throws Exception;
+  }
+
+  private <T> T inContext(final Request<T> request) throws Exception {
+    try (final AutoTenantContext ignored = new AutoTenantContext(this.tenantIdentifier);
+         final AutoUserContext ignored2 = new AutoUserContext(this.userIdentifier, this.accessToken.get())) {
+      return request.run();
+    }
+  }
+
+  /**
+   * Waits for the events of all posted identifiers at once, those which arrived are verified and
+   * the others are reported as missing.
+   */
+  private void awaitPosted(final String operation, final Set<String> posted, final Set<String> verified) throws InterruptedException {
+    if (posted.isEmpty()) {
+      return;
+    }
+    final Set<String> missing;
+    try (final AutoTenantContext ignored = new AutoTenantContext(this.tenantIdentifier);
+         final PhaseProfiler.Phase ignored2 = this.profiler.phase("wait " + operation, this.tenantIdentifier)) {
+      missing = this.eventRecorder.waitForAll(operation, posted);
+    }
+    posted.stream().filter(identifier -> !missing.contains(identifier)).forEach(verified::add);
+    posted.clear();
+  }
+
+  private void await(final String operation, final String identifier) throws InterruptedException {
+    final boolean recorded;
+    try (final PhaseProfiler.Phase ignored = this.profiler.phase("wait " + operation, this.tenantIdentifier)) {
+      recorded = this.eventRecorder.wait(operation, identifier);
+    }
+    if (!recorded) {
+      throw new IllegalStateException("No " + operation + " event for '" + identifier + "' of tenant '" + this.tenantIdentifier + "'.");
+    }
+  }
+
+  private void verify(final String kind,
+                      final Set<String> expected,
+                      final Set<String> verified,
+                      final AtomicReference<Exception> failure,
+                      final long startedAt) {
+    final List<String> missing = expected.stream()
+        .filter(identifier -> !verified.contains(identifier))
+        .sorted()
+        .collect(Collectors.toList());
+    if (failure.get() != null || !missing.isEmpty()) {
+      throw new IllegalStateException("Imported " + verified.size() + " of " + expected.size() + " " + kind
+          + " for tenant '" + this.tenantIdentifier + "', missing " + missing.stream().limit(MISSING_REPORTED).collect(Collectors.toList())
+          + (missing.size() > MISSING_REPORTED ? " and " + (missing.size() - MISSING_REPORTED) + " more" : ""), failure.get());
+    }
+    this.logger.info("Imported {} {} for tenant '{}' in {} ms with parallelism {}.", verified.size(), kind, this.tenantIdentifier,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), this.parallelism);
+  }
+
+  private static CSVParser parse(final URL csv) throws IOException {
+    final Reader reader = new InputStreamReader(csv.openStream(), StandardCharsets.UTF_8);
+    return new CSVParser(reader, CSVFormat.RFC4180.withHeader().withCommentMarker('#').withIgnoreSurroundingSpaces());
+  }
+
+  private static Ledger toLedger(final CSVRecord record) {
+    final Ledger ledger = new Ledger();
+    ledger.setIdentifier(record.get("identifier"));
+    ledger.setParentLedgerIdentifier(optional(record, "parentIdentifier"));
+    ledger.setType(record.get("type"));
+    ledger.setName(record.get("name"));
+    ledger.setDescription(optional(record, "description"));
+    final String show = optional(record, "show");
+    ledger.setShowAccountsInChart(show == null || Boolean.valueOf(show));
+    ledger.setSubLedgers(Collections.emptyList());
+    return ledger;
+  }
+
+  private static Account toAccount(final CSVRecord record) {
+    final Account account = new Account();
+    account.setLedger(record.get("parentIdentifier"));
+    account.setIdentifier(record.get("identifier"));
+    account.setName(record.get("name"));
+    account.setHolders(set(optional(record, "holders")));
+    account.setSignatureAuthorities(set(optional(record, "authorities")));
+    final String balance = optional(record, "balance");
+    account.setBalance(balance == null ? 0.0D : Double.valueOf(balance));
+    return account;
+  }
+
+  private static String optional(final CSVRecord record, final String column) {
+    if (!record.isMapped(column) || !record.isSet(column)) {
+      return null;
+    }
+    final String value = record.get(column).trim();
+    return value.isEmpty() ? null : value;
+  }
+
+  private static Set<String> set(final String value) {
+    if (value == null) {
+      return Collections.emptySet();
+    }
+    return Arrays.stream(value.split("\\|")).map(String::trim).filter(item -> !item.isEmpty()).collect(Collectors.toSet());
+  }
+}
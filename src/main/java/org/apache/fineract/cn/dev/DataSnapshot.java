@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import org.apache.cassandra.service.CassandraDaemon;
+import org.apache.cassandra.service.StorageService;
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+
+/**
+ * Archive of the embedded PostgreSQL and Cassandra data directories of a provisioned demo server,
+ * used to bring up an already provisioned environment without replaying the provisioning steps.
+ */
+class DataSnapshot {
+
+  private static final String ARCHIVE_NAME = "demo-server-snapshot.zip";
+  private static final String POSTGRES_ENTRY = "postgres/";
+  private static final String CASSANDRA_ENTRY = "cassandra/";
+
+  private final Path archive;
+  private final Path postgresDirectory;
+  private final Path cassandraDirectory;
+
+  DataSnapshot(final String directory) {
+    super();
+    this.archive = Paths.get(directory, ARCHIVE_NAME);
+    this.postgresDirectory = Paths.get("target", "embeddedPostgres").toAbsolutePath();
+    this.cassandraDirectory = Paths.get(EmbeddedCassandraServerHelper.DEFAULT_TMP_DIR).toAbsolutePath();
+  }
+
+  boolean exists() {
+    return Files.isRegularFile(this.archive);
+  }
+
+  File postgresDataDirectory() {
+    return this.postgresDirectory.toFile();
+  }
+
+  /**
+   * Removes a stale PostgreSQL working directory, so a new snapshot starts from an empty database.
+   */
+  void reset() throws IOException {
+    delete(this.postgresDirectory);
+  }
+
+  /**
+   * Replaces the working data directories with the content of the archive.
+   */
+  void restore() throws IOException {
+    delete(this.postgresDirectory);
+    delete(this.cassandraDirectory);
+
+    try (final ZipInputStream zip = new ZipInputStream(Files.newInputStream(this.archive))) {
+      for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+        final Path target = this.resolve(entry.getName());
+        if (entry.isDirectory()) {
+          Files.createDirectories(target);
+        } else {
+          Files.createDirectories(target.getParent());
+          Files.copy(zip, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+    }
+
+    // PostgreSQL refuses to start on a data directory that is accessible by others; Windows has no
+    // POSIX permissions to restrict.
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      Files.setPosixFilePermissions(this.postgresDirectory, PosixFilePermissions.fromString("rwx------"));
+    }
+  }
+
+  /**
+   * Writes the working data directories into the archive. Both data stores have to be stopped, or
+   * at least drained, before.
+   */
+  void archive() throws IOException {
+    Files.createDirectories(this.archive.getParent());
+    final Path temporary = Files.createTempFile(this.archive.getParent(), ARCHIVE_NAME, ".tmp");
+    try (final ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(temporary))) {
+      add(zip, this.postgresDirectory, POSTGRES_ENTRY);
+      add(zip, this.cassandraDirectory, CASSANDRA_ENTRY);
+    }
+    Files.move(temporary, this.archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Starts Cassandra on the restored directory. {@link EmbeddedCassandraServerHelper} always wipes
+   * its data directories on start, so the daemon is activated the same way, minus the cleanup.
+   */
+  void startCassandra(final long timeoutMillis) throws InterruptedException, TimeoutException {
+    System.setProperty("cassandra.config",
+        "file:" + this.cassandraDirectory.resolve(EmbeddedCassandraServerHelper.DEFAULT_CASSANDRA_YML_FILE));
+    System.setProperty("cassandra-foreground", "true");
+    System.setProperty("cassandra.native.epoll.enabled", "false");
+    System.setProperty("cassandra.unsafesystem", "true");
+
+    final Thread starter = new Thread(() -> new CassandraDaemon(true).activate(), "cassandra-snapshot-start");
+    starter.setDaemon(true);
+    starter.start();
+
+    final long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (!StorageService.instance.isNativeTransportRunning()) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new TimeoutException("Cassandra did not start from snapshot within " + timeoutMillis + " ms.");
+      }
+      TimeUnit.MILLISECONDS.sleep(200L);
+    }
+  }
+
+  /**
+   * Flushes all memtables and stops accepting writes, so the Cassandra directory can be archived.
+   */
+  static void drainCassandra() throws Exception {
+    StorageService.instance.drain();
+  }
+
+  private Path resolve(final String entryName) throws IOException {
+    final Path target;
+    if (entryName.startsWith(POSTGRES_ENTRY)) {
+      target = this.postgresDirectory.resolve(entryName.substring(POSTGRES_ENTRY.length())).normalize();
+    } else if (entryName.startsWith(CASSANDRA_ENTRY)) {
+      target = this.cassandraDirectory.resolve(entryName.substring(CASSANDRA_ENTRY.length())).normalize();
+    } else {
+      throw new IOException("Unexpected snapshot entry '" + entryName + "'.");
+    }
+    if (!target.startsWith(this.postgresDirectory) && !target.startsWith(this.cassandraDirectory)) {
+      throw new IOException("Snapshot entry '" + entryName + "' points outside of the data directories.");
+    }
+    return target;
+  }
+
+  private static void add(final ZipOutputStream zip, final Path root, final String prefix) throws IOException {
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+        zip.putNextEntry(new ZipEntry(prefix + entryPath(root, dir) + (dir.equals(root) ? "" : "/")));
+        zip.closeEntry();
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+        zip.putNextEntry(new ZipEntry(prefix + entryPath(root, file)));
+        try (final InputStream in = Files.newInputStream(file)) {
+          copy(in, zip);
+        }
+        zip.closeEntry();
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private static String entryPath(final Path root, final Path path) {
+    return root.relativize(path).toString().replace(File.separatorChar, '/');
+  }
+
+  private static void copy(final InputStream in, final OutputStream out) throws IOException {
+    final byte[] buffer = new byte[64 * 1024];
+    for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+      out.write(buffer, 0, read);
+    }
+  }
+
+  private static void delete(final Path root) throws IOException {
+    if (!Files.exists(root)) {
+      return;
+    }
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency histograms, call and error counts per named operation, safe to record into from any
+ * number of threads.
+ */
+class LatencyStats {
+
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+  static class Snapshot {
+    private final String operation;
+    private final Histogram histogram;
+    private final long errors;
+
+    private Snapshot(final String operation, final Histogram histogram, final long errors) {
+      this.operation = operation;
+      this.histogram = histogram;
+      this.errors = errors;
+    }
+
+    String operation() {
+      return this.operation;
+    }
+
+    long calls() {
+      return this.histogram.getTotalCount();
+    }
+
+    long errors() {
+      return this.errors;
+    }
+
+    double percentileSeconds(final double percentile) {
+      return this.histogram.getValueAtPercentile(percentile) / 1_000_000_000.0D;
+    }
+
+    double totalSeconds() {
+      return this.histogram.getMean() * this.histogram.getTotalCount() / 1_000_000_000.0D;
+    }
+  }
+
+  private static class Entry {
+    private final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+    private final LongAdder errors = new LongAdder();
+  }
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private volatile long startNanos = System.nanoTime();
+
+  LatencyStats() {
+    super();
+  }
+
+  void record(final String operation, final long elapsedNanos, final boolean failed) {
+    final Entry entry = this.entries.computeIfAbsent(operation, key -> new Entry());
+    entry.histogram.recordValue(Math.min(Math.max(0L, elapsedNanos), HIGHEST_TRACKABLE_NANOS));
+    if (failed) {
+      entry.errors.increment();
+    }
+  }
+
+  void reset() {
+    this.entries.clear();
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * @return a copy of the histogram of each operation, sorted by name
+   */
+  List<Snapshot> snapshots() {
+    final List<Snapshot> snapshots = new ArrayList<>();
+    new TreeMap<>(this.entries).forEach((operation, entry) ->
+        snapshots.add(new Snapshot(operation, entry.histogram.copy(), entry.errors.sum())));
+    return snapshots;
+  }
+
+  /**
+   * @return one line per operation, sorted by name, with throughput since the start or last reset
+   */
+  List<String> report() {
+    final double elapsedSeconds = Math.max(1L, System.nanoTime() - this.startNanos) / 1_000_000_000.0D;
+    final List<String> lines = new ArrayList<>();
+    this.snapshots().forEach(entry -> {
+      final Histogram snapshot = entry.histogram;
+      lines.add(String.format(Locale.ROOT,
+          "%s: calls=%d, errors=%d, %.1f/s, p50=%.1f ms, p90=%.1f ms, p99=%.1f ms, p99.9=%.1f ms, max=%.1f ms",
+          entry.operation,
+          snapshot.getTotalCount(),
+          entry.errors,
+          snapshot.getTotalCount() / elapsedSeconds,
+          millis(snapshot.getValueAtPercentile(50.0D)),
+          millis(snapshot.getValueAtPercentile(90.0D)),
+          millis(snapshot.getValueAtPercentile(99.0D)),
+          millis(snapshot.getValueAtPercentile(99.9D)),
+          millis(snapshot.getMaxValue())));
+    });
+    return lines;
+  }
+
+  private static double millis(final long nanos) {
+    return nanos / 1_000_000.0D;
+  }
+}
@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.fineract.cn.accounting.api.v1.EventConstants;
+import org.apache.fineract.cn.accounting.api.v1.client.LedgerManager;
+import org.apache.fineract.cn.accounting.api.v1.client.LedgerNotFoundException;
+import org.apache.fineract.cn.accounting.api.v1.domain.Account;
+import org.apache.fineract.cn.accounting.api.v1.domain.AccountType;
+import org.apache.fineract.cn.accounting.api.v1.domain.Ledger;
+import org.apache.fineract.cn.api.context.AutoGuest;
+import org.apache.fineract.cn.api.context.AutoUserContext;
+import org.apache.fineract.cn.customer.api.v1.CustomerEventConstants;
+import org.apache.fineract.cn.customer.api.v1.client.CustomerManager;
+import org.apache.fineract.cn.customer.api.v1.domain.Address;
+import org.apache.fineract.cn.customer.api.v1.domain.Customer;
+import org.apache.fineract.cn.customer.api.v1.domain.DateOfBirth;
+import org.apache.fineract.cn.dev.listener.IndexedEventRecorder;
+import org.apache.fineract.cn.identity.api.v1.client.IdentityManager;
+import org.apache.fineract.cn.identity.api.v1.domain.Authentication;
+import org.apache.fineract.cn.identity.api.v1.domain.UserWithPassword;
+import org.apache.fineract.cn.lang.AutoTenantContext;
+import org.apache.fineract.cn.test.servicestarter.Microservice;
+import org.slf4j.Logger;
+
+/**
+ * Drives a weighted mix of customer and ledger account operations against the provisioned tenants
+ * from a fixed number of workers, recording the latency of every call per operation. Each worker
+ * picks a random tenant and operation for every call; fetches use identifiers created earlier in
+ * the run, once their create event arrived. A worker whose login fails backs off before it tries
+ * again.
+ */
+class LoadGenerator {
+
+  enum Operation {
+    CREATE_CUSTOMER("createCustomer"),
+    CREATE_ACCOUNT("createAccount"),
+    FETCH_CUSTOMER("fetchCustomer"),
+    FETCH_ACCOUNT("fetchAccount");
+
+    private final String label;
+
+    Operation(final String label) {
+      this.label = label;
+    }
+
+    static Operation forName(final String name) {
+      for (final Operation operation : values()) {
+        if (operation.label.equalsIgnoreCase(name) || operation.name().equalsIgnoreCase(name)) {
+          return operation;
+        }
+      }
+      throw new IllegalArgumentException("Unknown load operation '" + name + "'.");
+    }
+
+    private boolean needsLedger() {
+      return this == CREATE_ACCOUNT || this == FETCH_ACCOUNT;
+    }
+  }
+
+  private static final String LEDGER_IDENTIFIER = "LOAD";
+  private static final int REMEMBERED_IDENTIFIERS = 1024;
+  private static final long LOGIN_BACKOFF_MILLIS = 50L;
+  private static final long MAX_LOGIN_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(2L);
+
+  private class TenantState {
+    private final String identifier;
+    private final AtomicReferenceArray<String> customers = new AtomicReferenceArray<>(REMEMBERED_IDENTIFIERS);
+    private final AtomicReferenceArray<String> accounts = new AtomicReferenceArray<>(REMEMBERED_IDENTIFIERS);
+    private final AtomicInteger customerCount = new AtomicInteger();
+    private final AtomicInteger accountCount = new AtomicInteger();
+
+    private TenantState(final String identifier) {
+      this.identifier = identifier;
+    }
+
+    private String accessToken() {
+      return tokens.accessToken(this.identifier, loadUser.getIdentifier(), () -> {
+        final long startedAt = System.nanoTime();
+        boolean failed = true;
+        try (final AutoGuest ignored = new AutoGuest()) {
+          final Authentication authentication = identityManager.api().login(loadUser.getIdentifier(), loadUser.getPassword());
+          failed = false;
+          return TokenCache.Token.of(authentication.getAccessToken(), authentication.getAccessTokenExpiration());
+        } finally {
+          stats.record("login", System.nanoTime() - startedAt, failed);
+        }
+      });
+    }
+  }
+
+  private final Logger logger;
+  private final IndexedEventRecorder eventRecorder;
+  private final PhaseProfiler profiler;
+  private final Microservice<IdentityManager> identityManager;
+  private final Microservice<CustomerManager> customerManager;
+  private final Microservice<LedgerManager> ledgerManager;
+  private final UserWithPassword loadUser;
+  private final TokenCache tokens;
+  private final LatencyStats stats;
+  private final String runIdentifier = Long.toString(System.currentTimeMillis() % 1_000_000_000L, 36);
+  private final AtomicLong nextIdentifier = new AtomicLong();
+
+  /**
+   * @param ledgerManager null if accounting is not running, account operations are left out then
+   */
+  LoadGenerator(final Logger logger, final IndexedEventRecorder eventRecorder, final PhaseProfiler profiler,
+                final Microservice<IdentityManager> identityManager, final Microservice<CustomerManager> customerManager,
+                final Microservice<LedgerManager> ledgerManager, final UserWithPassword loadUser, final TokenCache tokens,
+                final LatencyStats stats) {
+    super();
+    this.logger = logger;
+    this.eventRecorder = eventRecorder;
+    this.profiler = profiler;
+    this.identityManager = identityManager;
+    this.customerManager = customerManager;
+    this.ledgerManager = ledgerManager;
+    this.loadUser = loadUser;
+    this.tokens = tokens;
+    this.stats = stats;
+  }
+
+  void run(final List<String> tenantIdentifiers, final int workers, final long durationMillis,
+           final Map<Operation, Integer> mix) throws Exception {
+    if (tenantIdentifiers.isEmpty()) {
+      this.logger.warn("No tenants to run load against.");
+      return;
+    }
+    final List<Operation> weighted = new ArrayList<>();
+    mix.forEach((operation, weight) -> {
+      if (this.ledgerManager != null || !operation.needsLedger()) {
+        weighted.addAll(Collections.nCopies(Math.max(0, weight), operation));
+      }
+    });
+    if (weighted.isEmpty()) {
+      this.logger.warn("Load mix {} has no operation the running services support.", mix);
+      return;
+    }
+
+    final List<TenantState> tenants = new ArrayList<>();
+    for (final String tenantIdentifier : tenantIdentifiers) {
+      final TenantState tenant = new TenantState(tenantIdentifier);
+      if (weighted.contains(Operation.CREATE_ACCOUNT)) {
+        this.createLedger(tenant);
+      }
+      tenants.add(tenant);
+    }
+
+    this.logger.info("Running load with {} workers for {} s against {} tenants, mix {}.",
+        workers, TimeUnit.MILLISECONDS.toSeconds(durationMillis), tenants.size(), mix);
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+    final ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+      final Thread thread = new Thread(runnable, "load-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < workers; i++) {
+        futures.add(executor.submit(() -> this.work(tenants, weighted, deadline)));
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void work(final List<TenantState> tenants, final List<Operation> weighted, final long deadline) {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    int failedLogins = 0;
+    while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+      final TenantState tenant = tenants.get(random.nextInt(tenants.size()));
+      final Operation operation = weighted.get(random.nextInt(weighted.size()));
+      try (final AutoTenantContext ignored = new AutoTenantContext(tenant.identifier)) {
+        final String accessToken;
+        try {
+          accessToken = tenant.accessToken();
+        } catch (final RuntimeException ex) {
+          this.logger.debug("Login for tenant '{}' failed.", tenant.identifier, ex);
+          failedLogins++;
+          try {
+            Thread.sleep(Math.min(MAX_LOGIN_BACKOFF_MILLIS, LOGIN_BACKOFF_MILLIS << Math.min(failedLogins, 10)));
+          } catch (final InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+          }
+          continue;
+        }
+        failedLogins = 0;
+        try (final AutoUserContext ignored2 = new AutoUserContext(this.loadUser.getIdentifier(), accessToken)) {
+          this.execute(tenant, operation);
+        }
+      }
+    }
+  }
+
+  private void execute(final TenantState tenant, final Operation operation) {
+    final String identifier;
+    switch (operation) {
+      case FETCH_CUSTOMER:
+        identifier = remembered(tenant.customers, tenant.customerCount);
+        break;
+      case FETCH_ACCOUNT:
+        identifier = remembered(tenant.accounts, tenant.accountCount);
+        break;
+      default:
+        identifier = "ld" + this.runIdentifier + this.nextIdentifier.incrementAndGet();
+    }
+    if (identifier == null) {
+      // nothing created yet to fetch
+      return;
+    }
+
+    final long startedAt = System.nanoTime();
+    boolean failed = true;
+    try {
+      switch (operation) {
+        case CREATE_CUSTOMER:
+          this.customerManager.api().createCustomer(customer(identifier));
+          break;
+        case CREATE_ACCOUNT:
+          this.ledgerManager.api().createAccount(account(identifier));
+          break;
+        case FETCH_CUSTOMER:
+          this.customerManager.api().findCustomer(identifier);
+          break;
+        case FETCH_ACCOUNT:
+          this.ledgerManager.api().findAccount(identifier);
+          break;
+      }
+      failed = false;
+    } catch (final RuntimeException ex) {
+      this.logger.debug("Load operation {} for tenant '{}' failed.", operation.label, tenant.identifier, ex);
+    } finally {
+      this.stats.record(operation.label, System.nanoTime() - startedAt, failed);
+    }
+
+    if (!failed && operation == Operation.CREATE_CUSTOMER) {
+      this.rememberCreated(tenant.customers, tenant.customerCount, CustomerEventConstants.POST_CUSTOMER, identifier);
+    } else if (!failed && operation == Operation.CREATE_ACCOUNT) {
+      this.rememberCreated(tenant.accounts, tenant.accountCount, EventConstants.POST_ACCOUNT, identifier);
+    }
+  }
+
+  /**
+   * Creates are processed asynchronously, so an identifier is only fetched once its create event
+   * arrived; waiting for it is not part of the create's latency.
+   */
+  private void rememberCreated(final AtomicReferenceArray<String> identifiers, final AtomicInteger count,
+                               final String operation, final String identifier) {
+    try (final PhaseProfiler.Phase ignored = this.profiler.phase("wait " + operation)) {
+      if (this.eventRecorder.wait(operation, identifier)) {
+        remember(identifiers, count, identifier);
+      } else {
+        this.logger.debug("No {} event for '{}', it is not fetched.", operation, identifier);
+      }
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void createLedger(final TenantState tenant) throws InterruptedException {
+    try (final AutoTenantContext ignored = new AutoTenantContext(tenant.identifier);
+         final AutoUserContext ignored2 = new AutoUserContext(this.loadUser.getIdentifier(), tenant.accessToken())) {
+      try {
+        this.ledgerManager.api().findLedger(LEDGER_IDENTIFIER);
+        return;
+      } catch (final LedgerNotFoundException ex) {
+        // created below
+      }
+      final Ledger ledger = new Ledger();
+      ledger.setType(AccountType.ASSET.name());
+      ledger.setIdentifier(LEDGER_IDENTIFIER);
+      ledger.setName("Load generator accounts");
+      ledger.setDescription("Accounts created by the demo server load generator");
+      ledger.setShowAccountsInChart(Boolean.FALSE);
+      this.ledgerManager.api().createLedger(ledger);
+      final boolean recorded;
+      try (final PhaseProfiler.Phase ignored3 = this.profiler.phase("wait " + EventConstants.POST_LEDGER)) {
+        recorded = this.eventRecorder.wait(EventConstants.POST_LEDGER, LEDGER_IDENTIFIER);
+      }
+      if (!recorded) {
+        throw new IllegalStateException("Ledger '" + LEDGER_IDENTIFIER + "' of tenant '" + tenant.identifier + "' was not created.");
+      }
+    }
+  }
+
+  private static Customer customer(final String identifier) {
+    final DateOfBirth dateOfBirth = new DateOfBirth();
+    dateOfBirth.setYear(1950 + ThreadLocalRandom.current().nextInt(50));
+    dateOfBirth.setMonth(1 + ThreadLocalRandom.current().nextInt(12));
+    dateOfBirth.setDay(1 + ThreadLocalRandom.current().nextInt(28));
+
+    final Address address = new Address();
+    address.setStreet(ThreadLocalRandom.current().nextInt(1, 200) + " Load Street");
+    address.setCity("Basseterre");
+    address.setCountryCode("KN");
+    address.setCountry("Saint Kitts and Nevis");
+
+    final Customer customer = new Customer();
+    customer.setIdentifier(identifier);
+    customer.setType("PERSON");
+    customer.setGivenName("Load");
+    customer.setSurname(identifier.toUpperCase(Locale.ROOT));
+    customer.setDateOfBirth(dateOfBirth);
+    customer.setMember(Boolean.TRUE);
+    customer.setAddress(address);
+    return customer;
+  }
+
+  private static Account account(final String identifier) {
+    final Account account = new Account();
+    account.setType(AccountType.ASSET.name());
+    account.setIdentifier(identifier);
+    account.setName("Load account " + identifier);
+    account.setHolders(Collections.singleton(identifier));
+    account.setSignatureAuthorities(Collections.emptySet());
+    account.setBalance(0.0D);
+    account.setLedger(LEDGER_IDENTIFIER);
+    return account;
+  }
+
+  private static void remember(final AtomicReferenceArray<String> identifiers, final AtomicInteger count, final String identifier) {
+    identifiers.set(count.getAndIncrement() % REMEMBERED_IDENTIFIERS, identifier);
+  }
+
+  private static String remembered(final AtomicReferenceArray<String> identifiers, final AtomicInteger count) {
+    final int known = Math.min(count.get(), REMEMBERED_IDENTIFIERS);
+    return known == 0 ? null : identifiers.get(ThreadLocalRandom.current().nextInt(known));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Built-in mixes for the load generator. Workers, duration and mix can each be overridden with the
+ * demoserver.load.* properties.
+ */
+enum LoadProfile {
+
+  SMOKE(2, 30, mix(3, 1, 1, 1)),
+  STEADY(8, 300, mix(2, 2, 3, 3)),
+  STRESS(32, 600, mix(4, 4, 1, 1));
+
+  private final int workers;
+  private final int durationSeconds;
+  private final Map<LoadGenerator.Operation, Integer> mix;
+
+  LoadProfile(final int workers, final int durationSeconds, final Map<LoadGenerator.Operation, Integer> mix) {
+    this.workers = workers;
+    this.durationSeconds = durationSeconds;
+    this.mix = mix;
+  }
+
+  static LoadProfile forName(final String name) {
+    try {
+      return LoadProfile.valueOf(name.toUpperCase(Locale.ROOT));
+    } catch (final IllegalArgumentException ex) {
+      throw new IllegalArgumentException("Unknown load profile '" + name + "', expected one of " + Arrays.toString(values()) + ".");
+    }
+  }
+
+  /**
+   * Parses a mix like "createCustomer:5,fetchAccount:1", operations not mentioned are not run.
+   */
+  static Map<LoadGenerator.Operation, Integer> parseMix(final String mix) {
+    final Map<LoadGenerator.Operation, Integer> weights = new EnumMap<>(LoadGenerator.Operation.class);
+    for (final String part : mix.split(",")) {
+      final String[] weight = part.trim().split(":");
+      if (weight.length != 2) {
+        throw new IllegalArgumentException("Invalid load mix entry '" + part + "', expected operation:weight.");
+      }
+      weights.put(LoadGenerator.Operation.forName(weight[0].trim()), Integer.valueOf(weight[1].trim()));
+    }
+    return weights;
+  }
+
+  int workers() {
+    return this.workers;
+  }
+
+  int durationSeconds() {
+    return this.durationSeconds;
+  }
+
+  Map<LoadGenerator.Operation, Integer> mix() {
+    return this.mix;
+  }
+
+  private static Map<LoadGenerator.Operation, Integer> mix(final int createCustomer, final int createAccount,
+                                                           final int fetchCustomer, final int fetchAccount) {
+    final Map<LoadGenerator.Operation, Integer> weights = new EnumMap<>(LoadGenerator.Operation.class);
+    weights.put(LoadGenerator.Operation.CREATE_CUSTOMER, createCustomer);
+    weights.put(LoadGenerator.Operation.CREATE_ACCOUNT, createAccount);
+    weights.put(LoadGenerator.Operation.FETCH_CUSTOMER, fetchCustomer);
+    weights.put(LoadGenerator.Operation.FETCH_ACCOUNT, fetchAccount);
+    return Collections.unmodifiableMap(weights);
+  }
+}
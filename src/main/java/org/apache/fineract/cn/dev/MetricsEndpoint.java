@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+
+/**
+ * Serves the metrics of the demo server JVM in the Prometheus text format on /metrics. Sources are
+ * asked for their current values on every scrape, JVM memory, GC and thread metrics are always
+ * included.
+ */
+class MetricsEndpoint {
+
+  @FunctionalInterface
+  interface Source {
+    void write(Metrics metrics) throws Exception;
+  }
+
+  static class Metrics {
+    private static class Family {
+      private final String type;
+      private final String help;
+      private final List<String> samples = new ArrayList<>();
+
+      private Family(final String type, final String help) {
+        this.type = type;
+        this.help = help;
+      }
+    }
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    Metrics gauge(final String name, final String help, final double value, final String... labels) {
+      return this.sample(name, "gauge", help, value, labels);
+    }
+
+    Metrics counter(final String name, final String help, final double value, final String... labels) {
+      return this.sample(name, "counter", help, value, labels);
+    }
+
+    /**
+     * Adds a sample to the summary family, suffix is "", "_sum" or "_count".
+     */
+    Metrics summary(final String name, final String suffix, final String help, final double value, final String... labels) {
+      final Family family = this.families.computeIfAbsent(name, key -> new Family("summary", help));
+      family.samples.add(name + suffix + labels(labels) + " " + format(value));
+      return this;
+    }
+
+    private Metrics sample(final String name, final String type, final String help, final double value, final String... labels) {
+      final Family family = this.families.computeIfAbsent(name, key -> new Family(type, help));
+      family.samples.add(name + labels(labels) + " " + format(value));
+      return this;
+    }
+
+    private String render() {
+      final StringBuilder text = new StringBuilder();
+      this.families.forEach((name, family) -> {
+        text.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+        family.samples.forEach(sample -> text.append(sample).append('\n'));
+      });
+      return text.toString();
+    }
+
+    private static String labels(final String... labels) {
+      if (labels.length == 0) {
+        return "";
+      }
+      final StringBuilder text = new StringBuilder("{");
+      for (int i = 0; i + 1 < labels.length; i += 2) {
+        if (i > 0) {
+          text.append(',');
+        }
+        text.append(labels[i]).append("=\"")
+            .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+            .append('"');
+      }
+      return text.append('}').toString();
+    }
+
+    private static String format(final double value) {
+      if (Double.isNaN(value)) {
+        return "NaN";
+      }
+      return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+  }
+
+  private final Logger logger;
+  private final int port;
+  private final List<Source> sources;
+  private HttpServer server;
+
+  MetricsEndpoint(final Logger logger, final int port, final List<Source> sources) {
+    super();
+    this.logger = logger;
+    this.port = port;
+    this.sources = sources;
+  }
+
+  void start() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress(this.port), 0);
+    this.server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "metrics-endpoint");
+      thread.setDaemon(true);
+      return thread;
+    }));
+    this.server.createContext("/metrics", exchange -> {
+      final byte[] body = this.scrape().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+      exchange.sendResponseHeaders(200, body.length);
+      try (final OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    this.server.start();
+    this.logger.info("Serving metrics on http://localhost:{}/metrics.", this.port);
+  }
+
+  void stop() {
+    if (this.server != null) {
+      this.server.stop(0);
+    }
+  }
+
+  private String scrape() {
+    final Metrics metrics = new Metrics();
+    for (final Source source : this.sources) {
+      try {
+        source.write(metrics);
+      } catch (final Exception ex) {
+        // one failing source should not hide the others
+        this.logger.warn("Could not collect metrics.", ex);
+      }
+    }
+    jvm(metrics);
+    return metrics.render();
+  }
+
+  private static void jvm(final Metrics metrics) {
+    final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    final MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+    metrics.gauge("jvm_memory_bytes_used", "Used memory of the JVM.", heap.getUsed(), "area", "heap")
+        .gauge("jvm_memory_bytes_used", "Used memory of the JVM.", nonHeap.getUsed(), "area", "nonheap")
+        .gauge("jvm_memory_bytes_committed", "Committed memory of the JVM.", heap.getCommitted(), "area", "heap")
+        .gauge("jvm_memory_bytes_committed", "Committed memory of the JVM.", nonHeap.getCommitted(), "area", "nonheap")
+        .gauge("jvm_memory_bytes_max", "Maximum memory of the JVM, -1 if undefined.", heap.getMax(), "area", "heap");
+
+    for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      metrics.counter("jvm_gc_collection_seconds_count", "Number of collections of the garbage collector.",
+          collector.getCollectionCount(), "gc", collector.getName())
+          .counter("jvm_gc_collection_seconds_sum", "Time spent in collections of the garbage collector.",
+              collector.getCollectionTime() / 1000.0D, "gc", collector.getName());
+    }
+
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    metrics.gauge("jvm_threads_current", "Current number of threads.", threads.getThreadCount())
+        .gauge("jvm_threads_daemon", "Current number of daemon threads.", threads.getDaemonThreadCount())
+        .gauge("jvm_threads_peak", "Peak number of threads.", threads.getPeakThreadCount())
+        .gauge("process_uptime_seconds", "Uptime of the JVM.", ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0D);
+  }
+}
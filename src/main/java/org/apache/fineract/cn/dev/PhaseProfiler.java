@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+
+/**
+ * Records start and end of startup and provisioning phases per tenant, and writes them as a
+ * timeline in the Chrome trace event format (load it in chrome://tracing or Perfetto).
+ */
+class PhaseProfiler {
+
+  interface Phase extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static class Span {
+    private final String name;
+    private final String tenant;
+    private final String thread;
+    private final long threadId;
+    private final long startNanos;
+    private final long endNanos;
+
+    private Span(final String name, final String tenant, final Thread thread, final long startNanos, final long endNanos) {
+      this.name = name;
+      this.tenant = tenant;
+      this.thread = thread.getName();
+      this.threadId = thread.getId();
+      this.startNanos = startNanos;
+      this.endNanos = endNanos;
+    }
+  }
+
+  private static final Phase NO_OP = () -> { };
+
+  private final boolean enabled;
+  private final long originNanos = System.nanoTime();
+  private final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<>();
+
+  PhaseProfiler(final boolean enabled) {
+    super();
+    this.enabled = enabled;
+  }
+
+  /**
+   * Starts a phase for the tenant of the current thread, if any.
+   */
+  Phase phase(final String name) {
+    return this.phase(name, TenantContextHolder.identifier().orElse(null));
+  }
+
+  Phase phase(final String name, final String tenant) {
+    if (!this.enabled) {
+      return NO_OP;
+    }
+    final Thread thread = Thread.currentThread();
+    final long startNanos = System.nanoTime();
+    return () -> this.spans.add(new Span(name, tenant, thread, startNanos, System.nanoTime()));
+  }
+
+  void writeChromeTrace(final Path file) throws IOException {
+    if (!this.enabled) {
+      return;
+    }
+    final List<Map<String, Object>> traceEvents = new ArrayList<>();
+    for (final Span span : this.spans) {
+      final Map<String, Object> args = new LinkedHashMap<>();
+      args.put("thread", span.thread);
+      if (span.tenant != null) {
+        args.put("tenant", span.tenant);
+      }
+
+      final Map<String, Object> event = new LinkedHashMap<>();
+      event.put("name", span.name);
+      event.put("cat", span.tenant != null ? span.tenant : "demo-server");
+      event.put("ph", "X");
+      event.put("ts", TimeUnit.NANOSECONDS.toMicros(span.startNanos - this.originNanos));
+      event.put("dur", TimeUnit.NANOSECONDS.toMicros(span.endNanos - span.startNanos));
+      event.put("pid", 1);
+      event.put("tid", span.threadId);
+      event.put("args", args);
+      traceEvents.add(event);
+    }
+
+    final Map<String, Object> trace = new LinkedHashMap<>();
+    trace.put("traceEvents", traceEvents);
+    trace.put("displayTimeUnit", "ms");
+
+    if (file.toAbsolutePath().getParent() != null) {
+      Files.createDirectories(file.toAbsolutePath().getParent());
+    }
+    try (final Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      new Gson().toJson(trace, writer);
+    }
+  }
+}
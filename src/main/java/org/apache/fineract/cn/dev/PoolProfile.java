@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import org.apache.fineract.cn.test.env.ExtraProperties;
+
+/**
+ * BoneCP sizing per micro-service. Services doing the bulk of the provisioning and posting work get
+ * the heavy sizing, all others the light one. Pools are created per tenant, so the totals grow with
+ * the number of tenants.
+ */
+enum PoolProfile {
+
+  LITE(
+      new Sizing(1, 4, 1, 1, 0, 60, 240),
+      new Sizing(1, 4, 1, 1, 0, 60, 240)),
+  STANDARD(
+      new Sizing(2, 8, 2, 2, 50, 30, 120),
+      new Sizing(1, 4, 1, 1, 20, 60, 240)),
+  LOAD(
+      new Sizing(2, 16, 4, 4, 100, 10, 60),
+      new Sizing(1, 8, 2, 2, 50, 30, 120));
+
+  private static final Set<String> HEAVY_SERVICES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+      "provisioner", "identity", "accounting", "portfolio", "deposit-account-management", "teller")));
+
+  static class Sizing {
+    private final int partitionCount;
+    private final int maxConnectionsPerPartition;
+    private final int minConnectionsPerPartition;
+    private final int acquireIncrement;
+    private final int statementsCacheSize;
+    private final int idleConnectionTestPeriodInMinutes;
+    private final int idleMaxAgeInMinutes;
+
+    private Sizing(final int partitionCount, final int maxConnectionsPerPartition, final int minConnectionsPerPartition,
+                   final int acquireIncrement, final int statementsCacheSize,
+                   final int idleConnectionTestPeriodInMinutes, final int idleMaxAgeInMinutes) {
+      this.partitionCount = partitionCount;
+      this.maxConnectionsPerPartition = maxConnectionsPerPartition;
+      this.minConnectionsPerPartition = minConnectionsPerPartition;
+      this.acquireIncrement = acquireIncrement;
+      this.statementsCacheSize = statementsCacheSize;
+      this.idleConnectionTestPeriodInMinutes = idleConnectionTestPeriodInMinutes;
+      this.idleMaxAgeInMinutes = idleMaxAgeInMinutes;
+    }
+
+    @Override
+    public String toString() {
+      return "partitions=" + partitionCount
+          + ", connections=" + minConnectionsPerPartition + ".." + maxConnectionsPerPartition
+          + ", acquireIncrement=" + acquireIncrement
+          + ", statementsCache=" + statementsCacheSize
+          + ", idleTest=" + idleConnectionTestPeriodInMinutes + "min"
+          + ", idleMaxAge=" + idleMaxAgeInMinutes + "min";
+    }
+  }
+
+  private final Sizing heavy;
+  private final Sizing light;
+
+  PoolProfile(final Sizing heavy, final Sizing light) {
+    this.heavy = heavy;
+    this.light = light;
+  }
+
+  static PoolProfile forName(final String name) {
+    try {
+      return PoolProfile.valueOf(name.toUpperCase(Locale.ROOT));
+    } catch (final IllegalArgumentException ex) {
+      throw new IllegalArgumentException("Unknown pool profile '" + name + "', expected one of " + Arrays.toString(values()) + ".");
+    }
+  }
+
+  Sizing sizing(final String serviceName) {
+    return HEAVY_SERVICES.contains(serviceName) ? this.heavy : this.light;
+  }
+
+  ExtraProperties properties(final String serviceName) {
+    final Sizing sizing = this.sizing(serviceName);
+    final ExtraProperties properties = new ExtraProperties();
+    properties.setProperty("bonecp.partitionCount", Integer.toString(sizing.partitionCount));
+    properties.setProperty("bonecp.maxConnectionsPerPartition", Integer.toString(sizing.maxConnectionsPerPartition));
+    properties.setProperty("bonecp.minConnectionsPerPartition", Integer.toString(sizing.minConnectionsPerPartition));
+    properties.setProperty("bonecp.acquireIncrement", Integer.toString(sizing.acquireIncrement));
+    properties.setProperty("bonecp.statementsCacheSize", Integer.toString(sizing.statementsCacheSize));
+    properties.setProperty("bonecp.idleConnectionTestPeriodInMinutes", Integer.toString(sizing.idleConnectionTestPeriodInMinutes));
+    properties.setProperty("bonecp.idleMaxAgeInMinutes", Integer.toString(sizing.idleMaxAgeInMinutes));
+    return properties;
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import org.apache.fineract.cn.provisioner.api.v1.domain.Application;
+import org.slf4j.Logger;
+
+/**
+ * What the demo server provisioned: the applications with the URI they were created with, and per
+ * tenant the assigned applications with the build (see {@link ServiceArtifacts}) they were last
+ * assigned or migrated with. Kept as compact JSON with a SHA-256 checksum of the content, so a restart can diff it
+ * against the running services instead of asking the provisioner for the assignments of every
+ * tenant. The tenants and applications themselves are always taken from the provisioner, the
+ * registry drops what the provisioner no longer knows. A registry whose checksum does not match is
+ * discarded. Without a file the registry lives in memory only.
+ */
+class ProvisioningRegistry {
+
+  private static class State {
+    private TreeMap<String, String> applications = new TreeMap<>();
+    private TreeMap<String, TreeMap<String, String>> tenants = new TreeMap<>();
+  }
+
+  private static class Stored {
+    private String checksum;
+    private State state;
+  }
+
+  private static final Gson GSON = new Gson();
+
+  private final Path file;
+  private State state = new State();
+
+  private ProvisioningRegistry(final Path file) {
+    super();
+    this.file = file;
+  }
+
+  static ProvisioningRegistry inMemory() {
+    return new ProvisioningRegistry(null);
+  }
+
+  static ProvisioningRegistry open(final Path file, final Logger logger) throws IOException {
+    final ProvisioningRegistry registry = new ProvisioningRegistry(file);
+    if (!Files.exists(file)) {
+      return registry;
+    }
+    try (final Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      final Stored stored = GSON.fromJson(reader, Stored.class);
+      if (stored != null && stored.state != null && checksum(stored.state).equals(stored.checksum)) {
+        registry.state = stored.state;
+      } else {
+        logger.warn("Provisioning registry '{}' does not match its checksum, asking the provisioner instead.", file);
+      }
+    } catch (final JsonParseException ex) {
+      logger.warn("Provisioning registry '{}' is not readable, asking the provisioner instead.", file, ex);
+    }
+    return registry;
+  }
+
+  synchronized List<String> applications(final String tenant) {
+    return new ArrayList<>(this.state.tenants.getOrDefault(tenant, new TreeMap<>()).keySet());
+  }
+
+  synchronized boolean contains(final String tenant) {
+    return this.state.tenants.containsKey(tenant);
+  }
+
+  /**
+   * @return true if the application was assigned to the tenant with this build, and created with
+   * this URI; an unknown (empty) build is never current
+   */
+  synchronized boolean isCurrent(final String tenant, final String application, final String build, final String uri) {
+    final String assignedBuild = this.state.tenants.getOrDefault(tenant, new TreeMap<>()).get(application);
+    return build != null && !build.isEmpty() && build.equals(assignedBuild)
+        && uri != null && uri.equals(this.state.applications.get(application));
+  }
+
+  synchronized boolean isCreated(final String application, final String uri) {
+    return uri.equals(this.state.applications.get(application));
+  }
+
+  /**
+   * Replaces the recorded applications by those the provisioner knows, e.g. after its database was
+   * recreated.
+   */
+  synchronized void retainApplications(final Collection<Application> applications) {
+    this.state.applications.clear();
+    applications.forEach(application -> this.state.applications.put(application.getName(), application.getHomepage()));
+  }
+
+  /**
+   * Drops the tenants the provisioner does not know anymore.
+   */
+  synchronized void retainTenants(final Collection<String> tenants) {
+    this.state.tenants.keySet().retainAll(tenants);
+  }
+
+  synchronized void recordApplication(final String application, final String uri) {
+    this.state.applications.put(application, uri);
+  }
+
+  /**
+   * Records an assignment not migrated by the demo server yet, e.g. of a service which is not running.
+   */
+  synchronized void recordAssigned(final String tenant, final String application) {
+    this.state.tenants.computeIfAbsent(tenant, key -> new TreeMap<>()).putIfAbsent(application, "");
+  }
+
+  synchronized void recordAssignment(final String tenant, final String application, final String build) {
+    this.state.tenants.computeIfAbsent(tenant, key -> new TreeMap<>()).put(application, build);
+  }
+
+  synchronized void clear() {
+    this.state = new State();
+  }
+
+  synchronized String checksum() {
+    return checksum(this.state);
+  }
+
+  synchronized void save() throws IOException {
+    if (this.file == null) {
+      return;
+    }
+    final Stored stored = new Stored();
+    stored.state = this.state;
+    stored.checksum = checksum(this.state);
+
+    final Path directory = this.file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    final Path temporary = directory.resolve(this.file.getFileName() + ".tmp");
+    try (final Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+      GSON.toJson(stored, writer);
+    }
+    Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static String checksum(final State state) {
+    try {
+      final byte[] digest = MessageDigest.getInstance("SHA-256").digest(GSON.toJson(state).getBytes(StandardCharsets.UTF_8));
+      final StringBuilder hex = new StringBuilder();
+      for (final byte b : digest) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (final NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
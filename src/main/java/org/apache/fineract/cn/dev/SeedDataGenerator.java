@@ -0,0 +1,628 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.apache.fineract.cn.api.context.AutoUserContext;
+import org.apache.fineract.cn.customer.api.v1.CustomerEventConstants;
+import org.apache.fineract.cn.customer.api.v1.client.CustomerManager;
+import org.apache.fineract.cn.customer.api.v1.domain.Customer;
+import org.apache.fineract.cn.customer.api.v1.domain.DateOfBirth;
+import org.apache.fineract.cn.deposit.api.v1.client.DepositAccountManager;
+import org.apache.fineract.cn.deposit.api.v1.instance.domain.ProductInstance;
+import org.apache.fineract.cn.dev.listener.IndexedEventRecorder;
+import org.apache.fineract.cn.group.api.v1.client.GroupManager;
+import org.apache.fineract.cn.group.api.v1.domain.Cycle;
+import org.apache.fineract.cn.group.api.v1.domain.Group;
+import org.apache.fineract.cn.group.api.v1.domain.GroupDefinition;
+import org.apache.fineract.cn.lang.AutoTenantContext;
+import org.apache.fineract.cn.office.api.v1.EventConstants;
+import org.apache.fineract.cn.office.api.v1.client.OrganizationManager;
+import org.apache.fineract.cn.office.api.v1.domain.Employee;
+import org.apache.fineract.cn.office.api.v1.domain.Office;
+import org.apache.fineract.cn.portfolio.api.v1.client.PortfolioManager;
+import org.apache.fineract.cn.portfolio.api.v1.domain.Case;
+import org.apache.fineract.cn.portfolio.api.v1.events.CaseEvent;
+import org.slf4j.Logger;
+
+/**
+ * Fills a provisioned tenant with generated offices, employees, customers, groups, deposit accounts
+ * and loans up to the volume targets of demoserver.seed. Rows are generated while they are sent,
+ * chunk by chunk on a bounded pool, and every completed chunk is checkpointed per tenant, so an
+ * interrupted run continues where it stopped. Identifiers are derived from the row number; on
+ * resume the rows of the first chunk are looked up before they are created again. Rows are only
+ * posted by the workers; a chunk is checkpointed once the events of all rows it created arrived,
+ * awaited at once, or for deposit accounts, whose event only names the customer, once the
+ * customers' instances show up.
+ */
+class SeedDataGenerator {
+
+  enum Kind {
+    OFFICES("offices"),
+    EMPLOYEES("employees"),
+    CUSTOMERS("customers"),
+    GROUPS("groups"),
+    DEPOSIT_ACCOUNTS("depositAccounts"),
+    LOANS("loans");
+
+    private final String label;
+
+    Kind(final String label) {
+      this.label = label;
+    }
+
+    static Kind forName(final String name) {
+      for (final Kind kind : values()) {
+        if (kind.label.equalsIgnoreCase(name) || kind.name().equalsIgnoreCase(name)) {
+          return kind;
+        }
+      }
+      throw new IllegalArgumentException("Unknown seed data kind '" + name + "'.");
+    }
+  }
+
+  private interface Step {
+    boolean exists(int index);
+
+    void create(int index) throws Exception;
+
+    /**
+     * Called once all rows of a chunk have been posted, before the chunk is checkpointed.
+     *
+     * @param created the rows of the chunk which were posted, not found by a lookup
+     */
+    void verify(int from, int to, Collection<Integer> created) throws Exception;
+
+    default int chunkSize() {
+      return CHUNK_SIZE;
+    }
+  }
+
+  @FunctionalInterface
+  private interface Lookup {
+    void run();
+  }
+
+  private static final int CHUNK_SIZE = 1000;
+  private static final long VERIFY_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1L);
+  private static final int GROUP_SIZE = 10;
+  private static final String GROUP_DEFINITION = "seed";
+  private static final Gson GSON = new Gson();
+
+  private final Logger logger;
+  private final IndexedEventRecorder eventRecorder;
+  private final PhaseProfiler profiler;
+  private final OrganizationManager organizationManager;
+  private final CustomerManager customerManager;
+  private final GroupManager groupManager;
+  private final DepositAccountManager depositAccountManager;
+  private final PortfolioManager portfolioManager;
+  private final String tenantIdentifier;
+  private final String userIdentifier;
+  private final Supplier<String> accessToken;
+  private final int parallelism;
+  private final Path checkpointFile;
+  private String depositProduct;
+  private String loanProduct;
+  private Map<Kind, Integer> targets;
+
+  SeedDataGenerator(final Logger logger,
+                    final IndexedEventRecorder eventRecorder,
+                    final PhaseProfiler profiler,
+                    final OrganizationManager organizationManager,
+                    final CustomerManager customerManager,
+                    final GroupManager groupManager,
+                    final DepositAccountManager depositAccountManager,
+                    final PortfolioManager portfolioManager,
+                    final String tenantIdentifier,
+                    final String userIdentifier,
+                    final Supplier<String> accessToken,
+                    final int parallelism,
+                    final Path checkpointDirectory) {
+    super();
+    this.logger = logger;
+    this.eventRecorder = eventRecorder;
+    this.profiler = profiler;
+    this.organizationManager = organizationManager;
+    this.customerManager = customerManager;
+    this.groupManager = groupManager;
+    this.depositAccountManager = depositAccountManager;
+    this.portfolioManager = portfolioManager;
+    this.tenantIdentifier = tenantIdentifier;
+    this.userIdentifier = userIdentifier;
+    this.accessToken = accessToken;
+    this.parallelism = Math.max(1, parallelism);
+    this.checkpointFile = checkpointDirectory.resolve(tenantIdentifier + ".properties");
+  }
+
+  /**
+   * Deposit accounts and loans are opened for existing, enabled products only, since a product
+   * needs ledgers and accounts chosen for the tenant's chart of accounts. Without a product they
+   * are skipped.
+   */
+  SeedDataGenerator withProducts(final String depositProduct, final String loanProduct) {
+    this.depositProduct = depositProduct;
+    this.loanProduct = loanProduct;
+    return this;
+  }
+
+  /**
+   * Parses targets like "offices:10,employees:50,customers:1000000", kinds not mentioned are not
+   * generated.
+   */
+  static Map<Kind, Integer> parseTargets(final String targets) {
+    final Map<Kind, Integer> volumes = new EnumMap<>(Kind.class);
+    for (final String part : targets.split(",")) {
+      final String[] volume = part.trim().split(":");
+      if (volume.length != 2) {
+        throw new IllegalArgumentException("Invalid seed target '" + part + "', expected kind:count.");
+      }
+      volumes.put(Kind.forName(volume[0].trim()), Integer.valueOf(volume[1].trim()));
+    }
+    requires(volumes, Kind.EMPLOYEES, Kind.OFFICES);
+    requires(volumes, Kind.GROUPS, Kind.OFFICES);
+    requires(volumes, Kind.GROUPS, Kind.EMPLOYEES);
+    requires(volumes, Kind.GROUPS, Kind.CUSTOMERS);
+    requires(volumes, Kind.DEPOSIT_ACCOUNTS, Kind.CUSTOMERS);
+    requires(volumes, Kind.LOANS, Kind.CUSTOMERS);
+    return volumes;
+  }
+
+  private static void requires(final Map<Kind, Integer> volumes, final Kind kind, final Kind dependency) {
+    if (volumes.getOrDefault(kind, 0) > 0 && volumes.getOrDefault(dependency, 0) <= 0) {
+      throw new IllegalArgumentException("Seed data " + kind.label + " need " + dependency.label + ".");
+    }
+  }
+
+  /**
+   * Forgets the progress recorded for the tenant, e.g. since its data stores have been created anew.
+   */
+  void discardCheckpoint() throws IOException {
+    if (Files.deleteIfExists(this.checkpointFile)) {
+      this.logger.info("Discarded the seed data checkpoint '{}' of the newly provisioned tenant '{}'.", this.checkpointFile, this.tenantIdentifier);
+    }
+  }
+
+  void run(final Map<Kind, Integer> volumes) throws Exception {
+    this.targets = volumes;
+    final Properties checkpoint = this.readCheckpoint();
+    for (final Kind kind : Kind.values()) {
+      final int target = volumes.getOrDefault(kind, 0);
+      final int done = Integer.parseInt(checkpoint.getProperty(kind.label, "0"));
+      if (target <= done) {
+        if (target > 0) {
+          this.logger.info("Seed data {} for tenant '{}' are complete according to checkpoint '{}'.", kind.label, this.tenantIdentifier, this.checkpointFile);
+        }
+        continue;
+      }
+      final Step step = this.step(kind);
+      if (step == null) {
+        this.logger.warn("Skipping seed data {} for tenant '{}', lite mode does not run the service or no product is configured.", kind.label, this.tenantIdentifier);
+        continue;
+      }
+
+      final long startedAt = System.nanoTime();
+      for (int chunk = done; chunk < target; chunk += step.chunkSize()) {
+        final int end = Math.min(target, chunk + step.chunkSize());
+        this.runChunk(step, chunk, end, chunk == done);
+        checkpoint.setProperty(kind.label, Integer.toString(end));
+        this.writeCheckpoint(checkpoint);
+        this.logger.debug("Seeded {} of {} {} for tenant '{}'.", end, target, kind.label, this.tenantIdentifier);
+      }
+      final long millis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+      this.logger.info("Seeded {} {} for tenant '{}' in {} ms ({} per second).", target - done, kind.label,
+          this.tenantIdentifier, millis, (target - done) * 1000L / millis);
+    }
+  }
+
+  private void runChunk(final Step step, final int from, final int to, final boolean lookup) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(this.parallelism);
+    final Semaphore inFlight = new Semaphore(this.parallelism);
+    final AtomicReference<Exception> failure = new AtomicReference<>();
+    final Queue<Integer> created = new ConcurrentLinkedQueue<>();
+    try {
+      for (int index = from; index < to && failure.get() == null; index++) {
+        final int row = index;
+        inFlight.acquire();
+        executor.execute(() -> {
+          try (final AutoTenantContext ignored = new AutoTenantContext(this.tenantIdentifier);
+               final AutoUserContext ignored2 = new AutoUserContext(this.userIdentifier, this.accessToken.get())) {
+            if (!lookup || !step.exists(row)) {
+              step.create(row);
+              created.add(row);
+            }
+          } catch (final Exception ex) {
+            this.logger.error("Seeding row {} for tenant '{}' failed.", row, this.tenantIdentifier, ex);
+            failure.compareAndSet(null, ex);
+          } finally {
+            inFlight.release();
+          }
+        });
+      }
+      inFlight.acquire(this.parallelism);
+    } finally {
+      executor.shutdownNow();
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    try (final AutoTenantContext ignored = new AutoTenantContext(this.tenantIdentifier);
+         final AutoUserContext ignored2 = new AutoUserContext(this.userIdentifier, this.accessToken.get())) {
+      step.verify(from, to, created);
+    }
+  }
+
+  private Step step(final Kind kind) throws Exception {
+    switch (kind) {
+      case OFFICES:
+        return new Step() {
+          @Override
+          public boolean exists(final int index) {
+            return found(() -> organizationManager.findOfficeByIdentifier(office(index)));
+          }
+
+          @Override
+          public void create(final int index) throws Exception {
+            organizationManager.createOffice(SeedDataGenerator.this.newOffice(index));
+          }
+
+          @Override
+          public void verify(final int from, final int to, final Collection<Integer> created) throws InterruptedException {
+            SeedDataGenerator.this.awaitAll(EventConstants.OPERATION_POST_OFFICE, created, SeedDataGenerator::office);
+          }
+        };
+      case EMPLOYEES:
+        return new Step() {
+          @Override
+          public boolean exists(final int index) {
+            return found(() -> organizationManager.findEmployee(employee(index)));
+          }
+
+          @Override
+          public void create(final int index) throws Exception {
+            organizationManager.createEmployee(SeedDataGenerator.this.newEmployee(index));
+          }
+
+          @Override
+          public void verify(final int from, final int to, final Collection<Integer> created) throws InterruptedException {
+            SeedDataGenerator.this.awaitAll(EventConstants.OPERATION_POST_EMPLOYEE, created, SeedDataGenerator::employee);
+          }
+        };
+      case CUSTOMERS:
+        return new Step() {
+          @Override
+          public boolean exists(final int index) {
+            return found(() -> customerManager.findCustomer(customer(index)));
+          }
+
+          @Override
+          public void create(final int index) throws Exception {
+            customerManager.createCustomer(SeedDataGenerator.this.newCustomer(index));
+          }
+
+          @Override
+          public void verify(final int from, final int to, final Collection<Integer> created) throws InterruptedException {
+            SeedDataGenerator.this.awaitAll(CustomerEventConstants.POST_CUSTOMER, created, SeedDataGenerator::customer);
+          }
+        };
+      case GROUPS:
+        if (this.groupManager == null) {
+          return null;
+        }
+        this.createGroupDefinition();
+        return new Step() {
+          @Override
+          public boolean exists(final int index) {
+            return found(() -> groupManager.findGroup(group(index)));
+          }
+
+          @Override
+          public void create(final int index) throws Exception {
+            groupManager.createGroup(SeedDataGenerator.this.newGroup(index));
+          }
+
+          @Override
+          public void verify(final int from, final int to, final Collection<Integer> created) throws InterruptedException {
+            SeedDataGenerator.this.awaitAll(org.apache.fineract.cn.group.api.v1.EventConstants.POST_GROUP, created, SeedDataGenerator::group);
+          }
+        };
+      case DEPOSIT_ACCOUNTS:
+        if (this.depositProduct == null || this.depositAccountManager == null) {
+          return null;
+        }
+        return new Step() {
+          @Override
+          public boolean exists(final int index) {
+            // instances get their account identifier from the service, so count the customer's instances
+            final int customers = SeedDataGenerator.this.count(Kind.CUSTOMERS);
+            return depositAccountManager.fetchProductInstances(customer(index % customers)).stream()
+                .filter(instance -> depositProduct.equals(instance.getProductIdentifier()))
+                .count() > index / customers;
+          }
+
+          @Override
+          public void create(final int index) {
+            final ProductInstance productInstance = new ProductInstance();
+            productInstance.setProductIdentifier(depositProduct);
+            productInstance.setCustomerIdentifier(customer(index % SeedDataGenerator.this.count(Kind.CUSTOMERS)));
+            depositAccountManager.create(productInstance);
+          }
+
+          @Override
+          public void verify(final int from, final int to, final Collection<Integer> created) throws InterruptedException {
+            // the event names the customer only, which repeats across chunks, so count the instances
+            final long deadline = System.currentTimeMillis() + VERIFY_TIMEOUT_MILLIS;
+            for (int index = from; index < to; index++) {
+              while (!this.exists(index)) {
+                if (System.currentTimeMillis() > deadline) {
+                  throw new IllegalStateException("Deposit account " + index + " of tenant '" + tenantIdentifier + "' was not opened.");
+                }
+                Thread.sleep(100L);
+              }
+            }
+          }
+
+          @Override
+          public int chunkSize() {
+            // every customer once per chunk, so concurrent rows never count the same customer's instances
+            return Math.min(CHUNK_SIZE, SeedDataGenerator.this.count(Kind.CUSTOMERS));
+          }
+        };
+      case LOANS:
+        if (this.loanProduct == null || this.portfolioManager == null) {
+          return null;
+        }
+        return new Step() {
+          @Override
+          public boolean exists(final int index) {
+            return found(() -> portfolioManager.getCase(loanProduct, loan(index)));
+          }
+
+          @Override
+          public void create(final int index) throws Exception {
+            portfolioManager.createCase(loanProduct, SeedDataGenerator.this.newLoan(index));
+          }
+
+          @Override
+          public void verify(final int from, final int to, final Collection<Integer> created) throws InterruptedException {
+            SeedDataGenerator.this.awaitAll(org.apache.fineract.cn.portfolio.api.v1.events.EventConstants.POST_CASE, created, index -> new CaseEvent(loanProduct, loan(index)));
+          }
+        };
+      default:
+        throw new IllegalArgumentException("Unknown seed data kind " + kind + ".");
+    }
+  }
+
+  private void createGroupDefinition() throws Exception {
+    try (final AutoTenantContext ignored = new AutoTenantContext(this.tenantIdentifier);
+         final AutoUserContext ignored2 = new AutoUserContext(this.userIdentifier, this.accessToken.get())) {
+      if (found(() -> this.groupManager.findGroupDefinition(GROUP_DEFINITION))) {
+        return;
+      }
+      final Cycle cycle = new Cycle();
+      cycle.setNumberOfMeetings(52);
+      cycle.setFrequency("WEEKLY");
+      cycle.setAdjustment("NEXT_BUSINESS_DAY");
+
+      final GroupDefinition groupDefinition = new GroupDefinition();
+      groupDefinition.setIdentifier(GROUP_DEFINITION);
+      groupDefinition.setDescription("Groups generated by the demo server seed data");
+      groupDefinition.setMinimalSize(1);
+      groupDefinition.setMaximalSize(GROUP_SIZE);
+      groupDefinition.setCycle(cycle);
+      this.groupManager.createGroupDefinition(groupDefinition);
+    }
+  }
+
+  /**
+   * Waits for the events of all created rows at once, like the chart of accounts import.
+   */
+  private <T> void awaitAll(final String operation, final Collection<Integer> created, final IntFunction<T> payload)
+      throws InterruptedException {
+    final List<T> payloads = created.stream().map(payload::apply).collect(Collectors.toList());
+    final Set<T> missing;
+    try (final PhaseProfiler.Phase ignored = this.profiler.phase("wait " + operation, this.tenantIdentifier)) {
+      missing = this.eventRecorder.waitForAll(operation, payloads);
+    }
+    if (!missing.isEmpty()) {
+      throw new IllegalStateException("No " + operation + " event for " + missing.size() + " rows of tenant '"
+          + this.tenantIdentifier + "', e.g. '" + missing.iterator().next() + "'.");
+    }
+  }
+
+  private int count(final Kind kind) {
+    return this.targets.getOrDefault(kind, 0);
+  }
+
+  private Office newOffice(final int index) {
+    final org.apache.fineract.cn.office.api.v1.domain.Address address = new org.apache.fineract.cn.office.api.v1.domain.Address();
+    address.setStreet((index % 200 + 1) + " Seed Street");
+    address.setCity("Basseterre");
+    address.setCountryCode("KN");
+    address.setCountry("Saint Kitts and Nevis");
+
+    final Office office = new Office();
+    office.setIdentifier(office(index));
+    office.setName("Branch " + index);
+    office.setDescription("Office generated by the demo server seed data");
+    office.setAddress(address);
+    return office;
+  }
+
+  private Employee newEmployee(final int index) {
+    final Employee employee = new Employee();
+    employee.setIdentifier(employee(index));
+    employee.setGivenName("Seed");
+    employee.setSurname("Employee " + index);
+    employee.setAssignedOffice(office(index % this.count(Kind.OFFICES)));
+    return employee;
+  }
+
+  private Customer newCustomer(final int index) {
+    final DateOfBirth dateOfBirth = new DateOfBirth();
+    dateOfBirth.setYear(1950 + index % 50);
+    dateOfBirth.setMonth(1 + index % 12);
+    dateOfBirth.setDay(1 + index % 28);
+
+    final org.apache.fineract.cn.customer.api.v1.domain.Address address = new org.apache.fineract.cn.customer.api.v1.domain.Address();
+    address.setStreet((index % 200 + 1) + " Seed Street");
+    address.setCity("Basseterre");
+    address.setCountryCode("KN");
+    address.setCountry("Saint Kitts and Nevis");
+
+    final Customer customer = new Customer();
+    customer.setIdentifier(customer(index));
+    customer.setType("PERSON");
+    customer.setGivenName("Seed");
+    customer.setSurname("Customer " + index);
+    customer.setDateOfBirth(dateOfBirth);
+    customer.setMember(Boolean.TRUE);
+    customer.setAddress(address);
+    if (this.count(Kind.OFFICES) > 0) {
+      customer.setAssignedOffice(office(index % this.count(Kind.OFFICES)));
+    }
+    if (this.count(Kind.EMPLOYEES) > 0) {
+      customer.setAssignedEmployee(employee(index % this.count(Kind.EMPLOYEES)));
+    }
+    return customer;
+  }
+
+  private Group newGroup(final int index) {
+    final int customers = this.count(Kind.CUSTOMERS);
+    final Set<String> members = new HashSet<>();
+    for (int member = 0; member < Math.min(GROUP_SIZE, customers); member++) {
+      members.add(customer((index * GROUP_SIZE + member) % customers));
+    }
+
+    final org.apache.fineract.cn.group.api.v1.domain.Address address = new org.apache.fineract.cn.group.api.v1.domain.Address();
+    address.setStreet((index % 200 + 1) + " Seed Street");
+    address.setCity("Basseterre");
+    address.setCountryCode("KN");
+    address.setCountry("Saint Kitts and Nevis");
+
+    final Group group = new Group();
+    group.setIdentifier(group(index));
+    group.setGroupDefinitionIdentifier(GROUP_DEFINITION);
+    group.setName("Seed group " + index);
+    group.setLeaders(Collections.singleton(customer(index * GROUP_SIZE % customers)));
+    group.setMembers(members);
+    group.setOffice(office(index % this.count(Kind.OFFICES)));
+    group.setAssignedEmployee(employee(index % this.count(Kind.EMPLOYEES)));
+    group.setWeekday(1 + index % 5);
+    group.setAddress(address);
+    return group;
+  }
+
+  private Case newLoan(final int index) {
+    final Map<String, Object> termRange = new LinkedHashMap<>();
+    termRange.put("temporalUnit", "MONTHS");
+    termRange.put("maximum", 12);
+    final Map<String, Object> paymentCycle = new LinkedHashMap<>();
+    paymentCycle.put("temporalUnit", "MONTHS");
+    paymentCycle.put("period", 1);
+    final Map<String, Object> parameters = new LinkedHashMap<>();
+    parameters.put("customerIdentifier", customer(index % this.count(Kind.CUSTOMERS)));
+    parameters.put("maximumBalance", BigDecimal.valueOf(1000L + index % 10 * 500L));
+    parameters.put("termRange", termRange);
+    parameters.put("paymentCycle", paymentCycle);
+
+    final Case loan = new Case();
+    loan.setIdentifier(loan(index));
+    loan.setProductIdentifier(this.loanProduct);
+    loan.setParameters(GSON.toJson(parameters));
+    loan.setAccountAssignments(Collections.emptySet());
+    return loan;
+  }
+
+  private static String office(final int index) {
+    return "so" + index;
+  }
+
+  private static String employee(final int index) {
+    return "se" + index;
+  }
+
+  private static String customer(final int index) {
+    return "sc" + index;
+  }
+
+  private static String group(final int index) {
+    return "sg" + index;
+  }
+
+  private static String loan(final int index) {
+    return "sl" + index;
+  }
+
+  private static boolean found(final Lookup lookup) {
+    try {
+      lookup.run();
+      return true;
+    } catch (final RuntimeException ex) {
+      // not found, or not reachable, creating it reports the actual error then
+      return false;
+    }
+  }
+
+  private Properties readCheckpoint() throws IOException {
+    final Properties checkpoint = new Properties();
+    if (Files.exists(this.checkpointFile)) {
+      try (final Reader reader = Files.newBufferedReader(this.checkpointFile, StandardCharsets.UTF_8)) {
+        checkpoint.load(reader);
+      }
+    }
+    return checkpoint;
+  }
+
+  private void writeCheckpoint(final Properties checkpoint) throws IOException {
+    Files.createDirectories(this.checkpointFile.getParent());
+    final Path temporary = this.checkpointFile.resolveSibling(this.checkpointFile.getFileName() + ".tmp");
+    try (final Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+      checkpoint.store(writer, "Seed data rows completed for tenant " + this.tenantIdentifier);
+    }
+    Files.move(temporary, this.checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.fineract.cn.test.servicestarter.Microservice;
+import org.slf4j.Logger;
+
+/**
+ * Keeps track of which micro-services are running. Deferred services are only placeholders until
+ * they are activated, either by the service runner needing them or by an admin command. They keep
+ * running until stopped by an admin command, since requests to a service do not pass through here
+ * and a service that looks idle may well be in use. A service is marked as starting under its
+ * entry's lock, but started outside of it, so {@link #status()} and {@link #isStopped} never wait
+ * for a start; concurrent starts of the same service wait for the first one.
+ */
+class ServiceActivator {
+
+  @FunctionalInterface
+  interface ServiceAction {
+    void run(Microservice<?> microservice) throws Exception;
+  }
+
+  static class ServiceState {
+    private final String name;
+    private final boolean running;
+    private final boolean starting;
+    private final boolean deferred;
+    private final long startupMillis;
+
+    private ServiceState(final String name, final boolean running, final boolean starting, final boolean deferred,
+                         final long startupMillis) {
+      this.name = name;
+      this.running = running;
+      this.starting = starting;
+      this.deferred = deferred;
+      this.startupMillis = startupMillis;
+    }
+
+    String name() {
+      return this.name;
+    }
+
+    boolean running() {
+      return this.running;
+    }
+
+    boolean starting() {
+      return this.starting;
+    }
+
+    boolean deferred() {
+      return this.deferred;
+    }
+
+    /**
+     * @return duration of the last start until registered, 0 if never started
+     */
+    long startupMillis() {
+      return this.startupMillis;
+    }
+
+    @Override
+    public String toString() {
+      return this.name + (this.running ? " running" : this.starting ? " starting" : " stopped") + (this.deferred ? " (on demand)" : "");
+    }
+  }
+
+  private static class Entry {
+    private final Microservice<?> microservice;
+    private final boolean deferred;
+    // written under the entry's lock, read without it
+    private volatile boolean running;
+    private volatile boolean starting;
+    private volatile long startupMillis;
+
+    private Entry(final Microservice<?> microservice, final boolean deferred) {
+      this.microservice = microservice;
+      this.deferred = deferred;
+    }
+  }
+
+  private final Logger logger;
+  private final ServiceAction starter;
+  private final Map<String, Entry> entries = new LinkedHashMap<>();
+  private final List<String> startOrder = new ArrayList<>();
+  private volatile ServiceAction onActivation = microservice -> { };
+
+  ServiceActivator(final Logger logger, final ServiceAction starter) {
+    super();
+    this.logger = logger;
+    this.starter = starter;
+  }
+
+  synchronized void register(final Microservice<?> microservice, final boolean deferred) {
+    this.entries.put(microservice.name(), new Entry(microservice, deferred));
+  }
+
+  /**
+   * Called after a deferred service has been started, e.g. to assign it to the existing tenants.
+   */
+  void onActivation(final ServiceAction onActivation) {
+    this.onActivation = onActivation;
+  }
+
+  void start(final Microservice<?> microservice) throws Exception {
+    final Entry entry = this.entry(microservice.name());
+    if (this.beginStart(entry)) {
+      this.start(entry, null);
+    }
+  }
+
+  /**
+   * Starts the service if it is not running yet.
+   */
+  void activate(final String name) throws Exception {
+    final Entry entry = this.entry(name);
+    if (this.beginStart(entry)) {
+      this.logger.info("Activating service '{}'.", name);
+      this.start(entry, this.onActivation);
+    }
+  }
+
+  /**
+   * @return true if the caller has to start the service, false if it is running already
+   */
+  private boolean beginStart(final Entry entry) throws InterruptedException {
+    synchronized (entry) {
+      while (entry.starting) {
+        entry.wait();
+      }
+      if (entry.running) {
+        return false;
+      }
+      entry.starting = true;
+      return true;
+    }
+  }
+
+  private void start(final Entry entry, final ServiceAction afterStart) throws Exception {
+    boolean started = false;
+    try {
+      final long startedAt = System.nanoTime();
+      this.starter.run(entry.microservice);
+      entry.startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+      started = true;
+      synchronized (this) {
+        this.startOrder.add(entry.microservice.name());
+      }
+      if (afterStart != null) {
+        afterStart.run(entry.microservice);
+      }
+    } finally {
+      synchronized (entry) {
+        entry.running = started;
+        entry.starting = false;
+        entry.notifyAll();
+      }
+    }
+  }
+
+  void deactivate(final String name) throws InterruptedException {
+    final Entry entry = this.entry(name);
+    synchronized (entry) {
+      while (entry.starting) {
+        entry.wait();
+      }
+      if (entry.running) {
+        this.logger.info("Stopping service '{}'.", name);
+        entry.microservice.kill();
+        entry.running = false;
+        synchronized (this) {
+          this.startOrder.remove(name);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return true if the service is known, but currently not running
+   */
+  boolean isStopped(final String name) {
+    final Entry entry;
+    synchronized (this) {
+      entry = this.entries.get(name);
+    }
+    return entry != null && !entry.running;
+  }
+
+  List<ServiceState> status() {
+    final List<Entry> snapshot;
+    synchronized (this) {
+      snapshot = new ArrayList<>(this.entries.values());
+    }
+    final List<ServiceState> status = new ArrayList<>();
+    for (final Entry entry : snapshot) {
+      status.add(new ServiceState(entry.microservice.name(), entry.running, entry.starting, entry.deferred, entry.startupMillis));
+    }
+    return status;
+  }
+
+  /**
+   * Stops all running services in reverse start order.
+   */
+  void stopAll() throws InterruptedException {
+    final List<String> running;
+    synchronized (this) {
+      running = new ArrayList<>(this.startOrder);
+    }
+    Collections.reverse(running);
+    for (final String name : running) {
+      this.deactivate(name);
+    }
+  }
+
+  private synchronized Entry entry(final String name) {
+    final Entry entry = this.entries.get(name);
+    if (entry == null) {
+      throw new IllegalArgumentException("Unknown service '" + name + "'.");
+    }
+    return entry;
+  }
+}
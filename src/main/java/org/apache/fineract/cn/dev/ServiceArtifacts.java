@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+
+/**
+ * Identifies the build a service runs from by the SHA-256 of its service-boot jar in the local Maven
+ * repository, the one the service starter resolves. The version of a snapshot stays the same when
+ * the service is rebuilt, the checksum does not. Services are looked up by their application name
+ * (e.g. identity-v1) and resolved by the artifact name they were started from (e.g. identity). A
+ * jar which is not found yields an empty string, which never counts as current.
+ */
+class ServiceArtifacts {
+
+  private final Logger logger;
+  private final Path repository;
+  private final String version;
+  private final Map<String, String> artifactNames = new HashMap<>();
+  private final Map<String, String> checksums = new HashMap<>();
+
+  ServiceArtifacts(final Logger logger, final String version) {
+    super();
+    this.logger = logger;
+    this.repository = Paths.get(System.getProperty("maven.repo.local",
+        Paths.get(System.getProperty("user.home"), ".m2", "repository").toString()));
+    this.version = version;
+  }
+
+  synchronized void register(final String applicationName, final String artifactName) {
+    this.artifactNames.put(applicationName, artifactName);
+  }
+
+  synchronized String checksum(final String applicationName) {
+    return this.checksums.computeIfAbsent(applicationName, this::digest);
+  }
+
+  private String digest(final String applicationName) {
+    final String name = this.artifactNames.get(applicationName);
+    if (name == null) {
+      this.logger.warn("No artifact registered for application '{}', its assignments are always migrated.", applicationName);
+      return "";
+    }
+    // the service starter resolves org.apache.fineract.cn.<artifact>:service-boot:<version>
+    final Path jar = this.repository.resolve(Paths.get("org", "apache", "fineract", "cn", name, "service-boot",
+        this.version, "service-boot-" + this.version + ".jar"));
+    try (final InputStream in = Files.newInputStream(jar)) {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      final byte[] buffer = new byte[64 * 1024];
+      for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+        digest.update(buffer, 0, read);
+      }
+      final StringBuilder hex = new StringBuilder();
+      for (final byte b : digest.digest()) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (final IOException ex) {
+      this.logger.warn("Artifact of service '{}' not found at '{}', its applications are always migrated.", name, jar);
+      return "";
+    } catch (final NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.apache.fineract.cn.api.context.AutoSeshat;
+import org.apache.fineract.cn.provisioner.api.v1.client.Provisioner;
+import org.apache.fineract.cn.provisioner.api.v1.domain.AssignedApplication;
+import org.apache.fineract.cn.provisioner.api.v1.domain.Tenant;
+import org.slf4j.Logger;
+
+/**
+ * Reassigns the applications of existing tenants after a restart, so the services migrate their
+ * tenant data. Tenants are migrated concurrently; per tenant identity goes first and the other
+ * applications follow in one request. Tenants and applications are listed by the provisioner once,
+ * the assignments of a tenant come from the {@link ProvisioningRegistry} if it knows the tenant.
+ * Applications the registry records with the running build and URI are skipped unless forced.
+ */
+class ServiceMigration {
+
+  private final Logger logger;
+  private final Provisioner provisioner;
+  private final Supplier<String> provisionerToken;
+  private final String identityApplication;
+  private final Map<String, String> builds;
+  private final Map<String, String> uris;
+  private final ProvisioningRegistry registry;
+  private final boolean force;
+  private final int parallelism;
+
+  /**
+   * @param builds checksum of the artifact of every running or deferred application by name, see
+   *               {@link ServiceArtifacts}
+   * @param uris URI of every running or deferred application by name
+   */
+  ServiceMigration(final Logger logger,
+                   final Provisioner provisioner,
+                   final Supplier<String> provisionerToken,
+                   final String identityApplication,
+                   final Map<String, String> builds,
+                   final Map<String, String> uris,
+                   final ProvisioningRegistry registry,
+                   final boolean force,
+                   final int parallelism) {
+    super();
+    this.logger = logger;
+    this.provisioner = provisioner;
+    this.provisionerToken = provisionerToken;
+    this.identityApplication = identityApplication;
+    this.builds = builds;
+    this.uris = uris;
+    this.registry = registry;
+    this.force = force;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @param migrate decides by application name which of the assigned applications are migrated,
+   *                e.g. only those of running services
+   * @return the identifiers of all tenants
+   */
+  List<String> migrate(final Predicate<String> migrate) throws Exception {
+    final List<Tenant> tenants;
+    try (final AutoSeshat ignored = new AutoSeshat(this.provisionerToken.get())) {
+      tenants = this.provisioner.getTenants();
+      this.registry.retainApplications(this.provisioner.getApplications());
+    }
+    this.registry.retainTenants(tenants.stream().map(Tenant::getIdentifier).collect(Collectors.toList()));
+
+    try {
+      new TenantPipeline(this.logger, "Migrating", this.parallelism).run(tenants, tenant -> this.migrate(tenant, migrate));
+    } finally {
+      this.registry.save();
+    }
+    return tenants.stream().map(Tenant::getIdentifier).collect(Collectors.toList());
+  }
+
+  private void migrate(final Tenant tenant, final Predicate<String> migrate) {
+    final List<AssignedApplication> assigned;
+    if (this.registry.contains(tenant.getIdentifier())) {
+      assigned = this.registry.applications(tenant.getIdentifier()).stream()
+          .map(ServiceMigration::assignedApplication)
+          .collect(Collectors.toList());
+    } else {
+      try (final AutoSeshat ignored = new AutoSeshat(this.provisionerToken.get())) {
+        assigned = this.provisioner.getAssignedApplications(tenant.getIdentifier());
+      }
+      assigned.forEach(assignedApplication -> this.registry.recordAssigned(tenant.getIdentifier(), assignedApplication.getName()));
+    }
+
+    final List<AssignedApplication> pending = assigned.stream()
+        .filter(assignedApplication -> migrate.test(assignedApplication.getName()))
+        .filter(assignedApplication -> this.force || !this.registry.isCurrent(tenant.getIdentifier(),
+            assignedApplication.getName(), this.builds.get(assignedApplication.getName()), this.uris.get(assignedApplication.getName())))
+        .collect(Collectors.toList());
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    try (final AutoSeshat ignored = new AutoSeshat(this.provisionerToken.get())) {
+      for (final AssignedApplication assignedApplication : pending) {
+        if (assignedApplication.getName().equals(this.identityApplication)) {
+          // the other services need identity migrated first for their permissions
+          this.provisioner.assignIdentityManager(tenant.getIdentifier(), assignedApplication);
+          this.recordCurrent(tenant, assignedApplication);
+        }
+      }
+
+      final List<AssignedApplication> applications = pending.stream()
+          .filter(assignedApplication -> !assignedApplication.getName().equals(this.identityApplication))
+          .collect(Collectors.toList());
+      if (!applications.isEmpty()) {
+        this.provisioner.assignApplications(tenant.getIdentifier(), applications);
+        applications.forEach(assignedApplication -> this.recordCurrent(tenant, assignedApplication));
+      }
+    }
+    this.logger.debug("Migrated {} applications of tenant '{}'.", pending.size(), tenant.getIdentifier());
+  }
+
+  private void recordCurrent(final Tenant tenant, final AssignedApplication assignedApplication) {
+    this.registry.recordAssignment(tenant.getIdentifier(), assignedApplication.getName(),
+        this.builds.getOrDefault(assignedApplication.getName(), ""));
+    final String uri = this.uris.get(assignedApplication.getName());
+    if (uri != null) {
+      this.registry.recordApplication(assignedApplication.getName(), uri);
+    }
+  }
+
+  private static AssignedApplication assignedApplication(final String name) {
+    final AssignedApplication assignedApplication = new AssignedApplication();
+    assignedApplication.setName(name);
+    return assignedApplication;
+  }
+}
@@ -18,30 +18,39 @@
  */
 package org.apache.fineract.cn.dev;
 
-import static org.apache.fineract.cn.accounting.api.v1.EventConstants.POST_ACCOUNT;
-import static org.apache.fineract.cn.accounting.api.v1.EventConstants.POST_LEDGER;
-
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import com.opentable.db.postgres.embedded.EmbeddedPostgres;
 import org.apache.fineract.cn.accounting.api.v1.client.LedgerManager;
-import org.apache.fineract.cn.accounting.importer.AccountImporter;
-import org.apache.fineract.cn.accounting.importer.LedgerImporter;
 import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
 import org.apache.fineract.cn.api.config.EnableApiFactory;
 import org.apache.fineract.cn.api.context.AutoGuest;
 import org.apache.fineract.cn.api.context.AutoSeshat;
 import org.apache.fineract.cn.api.context.AutoUserContext;
 import org.apache.fineract.cn.api.util.ApiConstants;
-import org.apache.fineract.cn.api.util.ApiFactory;
 import org.apache.fineract.cn.cassandra.util.CassandraConnectorConstants;
 import org.apache.fineract.cn.cheque.api.v1.client.ChequeManager;
+import org.apache.fineract.cn.dev.listener.EventDispatcher;
+import org.apache.fineract.cn.dev.listener.EventReplay;
+import org.apache.fineract.cn.dev.listener.IndexedEventRecorder;
+import org.apache.fineract.cn.dev.logging.DroppedLogEvents;
 import org.apache.fineract.cn.customer.api.v1.CustomerEventConstants;
 import org.apache.fineract.cn.customer.api.v1.client.CustomerManager;
 import org.apache.fineract.cn.deposit.api.v1.client.DepositAccountManager;
@@ -57,6 +66,7 @@ import org.apache.fineract.cn.identity.api.v1.events.ApplicationPermissionUserEv
 import org.apache.fineract.cn.identity.api.v1.events.ApplicationSignatureEvent;
 import org.apache.fineract.cn.identity.api.v1.events.EventConstants;
 import org.apache.fineract.cn.lang.AutoTenantContext;
+import org.apache.fineract.cn.lang.TenantContextHolder;
 import org.apache.fineract.cn.postgresql.util.PostgreSQLConstants;
 import org.apache.fineract.cn.notification.api.v1.client.NotificationManager;
 import org.apache.fineract.cn.office.api.v1.client.OrganizationManager;
@@ -74,12 +84,11 @@ import org.apache.fineract.cn.rhythm.api.v1.events.BeatEvent;
 import org.apache.fineract.cn.teller.api.v1.client.TellerManager;
 import org.apache.fineract.cn.test.env.ExtraProperties;
 import org.apache.fineract.cn.test.fixture.postgresql.PostgreSQLInitializer;
-import org.apache.fineract.cn.test.listener.EnableEventRecording;
-import org.apache.fineract.cn.test.listener.EventRecorder;
 import org.apache.fineract.cn.test.servicestarter.ActiveMQForTest;
 import org.apache.fineract.cn.test.servicestarter.EurekaForTest;
 import org.apache.fineract.cn.test.servicestarter.IntegrationTestEnvironment;
 import org.apache.fineract.cn.test.servicestarter.Microservice;
+import org.apache.cassandra.service.StorageService;
 import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.junit.After;
@@ -109,9 +118,19 @@ import java.util.ArrayList;
 public class ServiceRunner {
   private static final String CLIENT_ID = "service-runner";
   private static final String SCHEDULER_USER_NAME = "imhotep";
+  private static final String LOAD_USER_NAME = "loadgenerator";
+  private static final String LOAD_USER_PASSWORD = "l0adGen!";
+  private static final String SEED_USER_NAME = "seeder";
+  private static final String SEED_USER_PASSWORD = "s33dData!";
   private static final String ADMIN_USER_NAME = "antony";
   private static final String TEST_LOGGER = "test-logger";
-  private static final String LOAN_INCOME_LEDGER = "1100";
+  private static final String SERVICE_VERSION = "0.1.0-BUILD-SNAPSHOT";
+  private static final String TENANTS_STEP = "tenants";
+  private static final int DEFAULT_STARTUP_PARALLELISM = 4;
+  private static final long DEFAULT_STARTUP_TIMEOUT_MINUTES = 15L;
+  private static final int DEFAULT_PROVISION_PARALLELISM = 4;
+  private static final int DEFAULT_CHART_OF_ACCOUNTS_PARALLELISM = 8;
+  private static final int DEFAULT_SEED_PARALLELISM = 16;
 
   private static Microservice<Provisioner> provisionerService;
   private static Microservice<IdentityManager> identityManager;
@@ -132,11 +151,12 @@ public class ServiceRunner {
 
   private static final String CUSTOM_PROP_PREFIX = "custom.";
   private boolean runInDebug;
+  private PoolProfile poolProfile;
+  private PhaseProfiler profiler;
 
   @Configuration
   @ActiveMQForTest.EnableActiveMQListen
   @EnableApiFactory
-  @EnableEventRecording(maxWait = 60_000)
   @ComponentScan("org.apache.fineract.cn.dev.listener")
   public static class TestConfiguration {
     public TestConfiguration() {
@@ -159,10 +179,13 @@ public class ServiceRunner {
   public static final IntegrationTestEnvironment INTEGRATION_TEST_ENVIRONMENT = new IntegrationTestEnvironment("fineract-demo");
 
   @Autowired
-  private ApiFactory apiFactory;
+  private IndexedEventRecorder eventRecorder;
+
+  @Autowired
+  private EventDispatcher eventDispatcher;
 
   @Autowired
-  private EventRecorder eventRecorder;
+  private EventReplay eventReplay;
 
   @Autowired
   private Environment environment;
@@ -180,8 +203,31 @@ public class ServiceRunner {
   /* Enabling lite mode restricts the working set of micro-services to Provisioner, Identity, Rhythm, Organization and Customer
    */
   private boolean liteModeEnabled;
-  private List<Tenant> tenantsToCreate;
-  private AuthenticationResponse authenticationResponse;
+
+  /* Enabling lazy mode starts the services outside of the lite working set only when they are first needed
+   */
+  private boolean lazyModeEnabled;
+  private ServiceActivator serviceActivator;
+  private Iterable<Tenant> tenantsToCreate;
+  private final List<String> tenantIdentifiers = new CopyOnWriteArrayList<>();
+  private final LatencyStats loadStats = new LatencyStats();
+  private final LatencyStats apiStats = new LatencyStats();
+  private TimedApiFactory timedApiFactory;
+  private MetricsEndpoint metricsEndpoint;
+  // set once the embedded Cassandra runs, Cassandra's static state must not be touched before
+  private volatile boolean cassandraStarted;
+  // reused by every scrape, guarded by postgresUp()
+  private Connection postgresProbe;
+
+  /* Set when demoserver.snapshot is given; a provisioning run archives its data stores there on shutdown, and later
+   * runs restore from that archive instead of provisioning again.
+   */
+  private DataSnapshot dataSnapshot;
+  private boolean restoredFromSnapshot;
+  private boolean provisioned;
+  private final TokenCache tokens = new TokenCache();
+  private ProvisioningRegistry registry;
+  private ServiceArtifacts artifacts;
 
 
   public ServiceRunner() {
@@ -190,123 +236,205 @@ public class ServiceRunner {
 
   @Before
   public void before() throws Exception {
+    this.profiler = new PhaseProfiler(this.environment.containsProperty("demoserver.profile"));
+    this.timedApiFactory = new TimedApiFactory(this.logger, this.apiStats);
     this.isPersistent = this.environment.containsProperty("demoserver.persistent");
+    if (this.environment.containsProperty("demoserver.metrics.port")) {
+      this.metricsEndpoint = new MetricsEndpoint(logger, this.environment.getProperty("demoserver.metrics.port", Integer.class),
+          Arrays.asList(this::writeEventMetrics, this::writeServiceMetrics, this::writeDataStoreMetrics, this::writeLogMetrics));
+      this.metricsEndpoint.start();
+    }
+    try (final PhaseProfiler.Phase ignored = this.profiler.phase("before", null)) {
+      this.startEnvironment();
+    }
+  }
+
+  private void startEnvironment() throws Exception {
     this.shouldProvision = this.environment.containsProperty("demoserver.provision");
     this.liteModeEnabled = this.environment.containsProperty("demoserver.lite");
     this.runInDebug = this.environment.containsProperty("demoserver.runInDebug");
+    this.lazyModeEnabled = this.environment.containsProperty("demoserver.lazy");
+    this.poolProfile = PoolProfile.forName(this.environment.getProperty("demoserver.pool", PoolProfile.LITE.name()));
+    // the embedded datastores start empty or from a snapshot, so only external datastores outlive a run
+    this.registry = this.isPersistent
+        ? ProvisioningRegistry.open(Paths.get(this.environment.getProperty("demoserver.registry", "provisioning-registry.json")), logger)
+        : ProvisioningRegistry.inMemory();
+    this.artifacts = new ServiceArtifacts(logger, SERVICE_VERSION);
 
     if (!this.isPersistent) {
-      // start embedded Cassandra
-      EmbeddedCassandraServerHelper.startEmbeddedCassandra(TimeUnit.SECONDS.toMillis(30L));
+      if (this.environment.containsProperty("demoserver.snapshot")) {
+        this.dataSnapshot = new DataSnapshot(this.environment.getProperty("demoserver.snapshot"));
+        this.restoredFromSnapshot = this.dataSnapshot.exists();
+      }
+
+      final EmbeddedPostgres.Builder postgresBuilder = EmbeddedPostgres.builder().setPort(5432);
+      if (this.restoredFromSnapshot) {
+        logger.info("Restoring provisioned data stores from snapshot in '{}'.", this.environment.getProperty("demoserver.snapshot"));
+        this.dataSnapshot.restore();
+        this.dataSnapshot.startCassandra(TimeUnit.SECONDS.toMillis(30L));
+        this.cassandraStarted = true;
+        // the snapshot already contains the provisioned tenants
+        this.shouldProvision = false;
+      } else {
+        // start embedded Cassandra
+        EmbeddedCassandraServerHelper.startEmbeddedCassandra(TimeUnit.SECONDS.toMillis(30L));
+        this.cassandraStarted = true;
+        if (this.dataSnapshot != null) {
+          this.dataSnapshot.reset();
+        }
+      }
+      if (this.dataSnapshot != null) {
+        postgresBuilder.setDataDirectory(this.dataSnapshot.postgresDataDirectory()).setCleanDataDirectory(false);
+      }
       // start embedded PostgreSQL
-      ServiceRunner.embeddedPostgres = embeddedPostgres.builder().setPort(5432).start();
+      ServiceRunner.embeddedPostgres = postgresBuilder.start();
     }
 
     ExtraProperties generalProperties = new ExtraProperties();
     generalProperties.setProperty("server.max-http-header-size", Integer.toString(16 * 1024));
-    generalProperties.setProperty("bonecp.partitionCount", "1");
-    generalProperties.setProperty("bonecp.maxConnectionsPerPartition", "4");
-    generalProperties.setProperty("bonecp.minConnectionsPerPartition", "1");
-    generalProperties.setProperty("bonecp.acquireIncrement", "1");
     this.setAdditionalProperties(generalProperties);
 
-    ServiceRunner.provisionerService = new Microservice<>(Provisioner.class, "provisioner", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT);
+    ServiceRunner.provisionerService = this.microservice(Provisioner.class, "provisioner");
     provisionerService.getProcessEnvironment().addSystemPrivateKeyToProperties();
     provisionerService.getProcessEnvironment().setProperty("system.initialclientid", ServiceRunner.CLIENT_ID);
-    startService(generalProperties, provisionerService);
-
-    // Creating Tenants before application startup to allow all microservices establish database connection
-    // to the PostgreSQL Database
-    if(this.shouldProvision){
-      createTenants();
-    }
 
-    ServiceRunner.identityManager = new Microservice<>(IdentityManager.class, "identity", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT)
+    ServiceRunner.identityManager = this.microservice(IdentityManager.class, "identity")
         .addProperties(new ExtraProperties() {{
           setProperty("identity.token.refresh.secureCookie", "false");
         }});
-    startService(generalProperties, identityManager);
 
-    ServiceRunner.rhythmManager = new Microservice<>(RhythmManager.class, "rhythm", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT)
+    ServiceRunner.rhythmManager = this.microservice(RhythmManager.class, "rhythm")
         .addProperties(new ExtraProperties() {{
           setProperty("rhythm.beatCheckRate", Long.toString(TimeUnit.MINUTES.toMillis(10)));
           setProperty("rhythm.user", SCHEDULER_USER_NAME);
         }});
-    startService(generalProperties, rhythmManager);
 
-    ServiceRunner.organizationManager = new Microservice<>(OrganizationManager.class, "office", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT);
-    startService(generalProperties, organizationManager);
+    ServiceRunner.organizationManager = this.microservice(OrganizationManager.class, "office");
 
-    ServiceRunner.customerManager = new Microservice<>(CustomerManager.class, "customer", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT);
-    startService(generalProperties, customerManager);
+    ServiceRunner.customerManager = this.microservice(CustomerManager.class, "customer");
+
+    final List<Microservice<?>> dependentServices = new ArrayList<>(Arrays.asList(rhythmManager, organizationManager, customerManager));
+    final List<Microservice<?>> onDemandServices = new ArrayList<>();
 
     if (!liteModeEnabled) {
-      ServiceRunner.ledgerManager = new Microservice<>(LedgerManager.class, "accounting", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT);
-      startService(generalProperties, ledgerManager);
+      ServiceRunner.ledgerManager = this.microservice(LedgerManager.class, "accounting");
 
-      ServiceRunner.portfolioManager = new Microservice<>(PortfolioManager.class, "portfolio", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT)
+      ServiceRunner.portfolioManager = this.microservice(PortfolioManager.class, "portfolio")
           .addProperties(new ExtraProperties() {{
             setProperty("portfolio.bookLateFeesAndInterestAsUser", SCHEDULER_USER_NAME);
           }});
-      startService(generalProperties, portfolioManager);
 
-      ServiceRunner.depositAccountManager = new Microservice<>(DepositAccountManager.class, "deposit-account-management", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT);
-      startService(generalProperties, depositAccountManager);
+      ServiceRunner.depositAccountManager = this.microservice(DepositAccountManager.class, "deposit-account-management");
+
+      ServiceRunner.tellerManager = this.microservice(TellerManager.class, "teller");
 
-      ServiceRunner.tellerManager = new Microservice<>(TellerManager.class, "teller", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT);
-      startService(generalProperties, ServiceRunner.tellerManager);
+      ServiceRunner.reportManager = this.microservice(ReportManager.class, "reporting");
 
-      ServiceRunner.reportManager = new Microservice<>(ReportManager.class, "reporting", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT);
-      startService(generalProperties, ServiceRunner.reportManager);
+      ServiceRunner.chequeManager = this.microservice(ChequeManager.class, "cheques");
 
-      ServiceRunner.chequeManager = new Microservice<>(ChequeManager.class, "cheques", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT);
-      startService(generalProperties, ServiceRunner.chequeManager);
+      ServiceRunner.payrollManager = this.microservice(PayrollManager.class, "payroll");
 
-      ServiceRunner.payrollManager = new Microservice<>(PayrollManager.class, "payroll", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT);
-      startService(generalProperties, ServiceRunner.payrollManager);
+      ServiceRunner.groupManager = this.microservice(GroupManager.class, "group");
 
-      ServiceRunner.groupManager = new Microservice<>(GroupManager.class, "group", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT);
-      startService(generalProperties, ServiceRunner.groupManager);
+      ServiceRunner.notificationManager = this.microservice(NotificationManager.class, "notification");
 
-      ServiceRunner.notificationManager = new Microservice<>(NotificationManager.class, "notification", "0.1.0-BUILD-SNAPSHOT", ServiceRunner.INTEGRATION_TEST_ENVIRONMENT);
-      startService(generalProperties, ServiceRunner.notificationManager);
+      final List<Microservice<?>> fullModeServices = Arrays.asList(ledgerManager, portfolioManager, depositAccountManager,
+          tellerManager, reportManager, chequeManager, payrollManager, groupManager, notificationManager);
+      if (lazyModeEnabled) {
+        onDemandServices.addAll(fullModeServices);
+      } else {
+        dependentServices.addAll(fullModeServices);
+      }
     }
+
+    this.serviceActivator = new ServiceActivator(this.logger, microservice -> startService(generalProperties, microservice));
+    this.serviceActivator.register(provisionerService, false);
+    this.serviceActivator.register(identityManager, false);
+    dependentServices.forEach(microservice -> this.serviceActivator.register(microservice, false));
+    onDemandServices.forEach(microservice -> this.serviceActivator.register(microservice, true));
+
+    // Provisioner first, then the tenants (to allow all microservices establish database connection to the
+    // PostgreSQL Database), then identity, then everything else in parallel.
+    final StartupScheduler startupScheduler = new StartupScheduler(this.logger,
+        this.environment.getProperty("demoserver.startup.parallelism", Integer.class, DEFAULT_STARTUP_PARALLELISM));
+    startupScheduler.add(provisionerService.name(), () -> this.serviceActivator.start(provisionerService));
+    startupScheduler.add(TENANTS_STEP, () -> {
+      if (this.shouldProvision) {
+        createTenants();
+      }
+    }, provisionerService.name());
+    startupScheduler.add(identityManager.name(), () -> this.serviceActivator.start(identityManager), TENANTS_STEP);
+    dependentServices.forEach(microservice ->
+        startupScheduler.add(microservice.name(), () -> this.serviceActivator.start(microservice), identityManager.name()));
+    startupScheduler.run(
+        this.environment.getProperty("demoserver.startup.timeout", Long.class, DEFAULT_STARTUP_TIMEOUT_MINUTES),
+        TimeUnit.MINUTES);
   }
 
   @After
   public void tearDown() throws Exception {
-    if (!liteModeEnabled) {
-      ServiceRunner.notificationManager.kill();
-      ServiceRunner.groupManager.kill();
-      ServiceRunner.payrollManager.kill();
-      ServiceRunner.chequeManager.kill();
-      ServiceRunner.reportManager.kill();
-      ServiceRunner.tellerManager.kill();
-      ServiceRunner.depositAccountManager.kill();
-      ServiceRunner.portfolioManager.kill();
-      ServiceRunner.ledgerManager.kill();
-    }
-    ServiceRunner.customerManager.kill();
-    ServiceRunner.organizationManager.kill();
-    ServiceRunner.rhythmManager.kill();
-    ServiceRunner.identityManager.kill();
+    // before() may have failed ahead of the activator, its error must not be hidden here
+    if (this.serviceActivator != null) {
+      this.serviceActivator.stopAll();
+    }
+
+    this.apiStats.report().forEach(line -> logger.info("API {}", line));
+    if (this.metricsEndpoint != null) {
+      this.metricsEndpoint.stop();
+    }
+
+    if (this.environment.containsProperty("demoserver.profile")) {
+      final Path timeline = Paths.get(this.environment.getProperty("demoserver.profile"));
+      this.profiler.writeChromeTrace(timeline);
+      logger.info("Wrote startup and provisioning timeline to '{}'.", timeline.toAbsolutePath());
+    }
 
     if (!isPersistent) {
-      ServiceRunner.embeddedPostgres.close();
-      EmbeddedCassandraServerHelper.cleanEmbeddedCassandra();
+      this.cassandraStarted = false;
+      this.closePostgresProbe();
+      if (this.dataSnapshot != null && this.provisioned) {
+        DataSnapshot.drainCassandra();
+        ServiceRunner.embeddedPostgres.close();
+        this.dataSnapshot.archive();
+        logger.info("Archived provisioned data stores to '{}'.", this.environment.getProperty("demoserver.snapshot"));
+      } else if (this.restoredFromSnapshot) {
+        ServiceRunner.embeddedPostgres.close();
+      } else {
+        ServiceRunner.embeddedPostgres.close();
+        EmbeddedCassandraServerHelper.cleanEmbeddedCassandra();
+      }
     }
   }
 
   @Test
-  public void startDevServer() throws InterruptedException, IOException, ArtifactResolutionException {
+  public void startDevServer() throws Exception {
     try {
       if (this.shouldProvision) {
         this.provisionAppsViaSeshat();
+        this.provisioned = true;
+        logger.info("Provisioning logged in {} times and reused a cached token {} times.", this.tokens.logins(), this.tokens.hits());
       } else {
         this.migrateServices();
+        if (this.environment.containsProperty("demoserver.seed")) {
+          // continues seed data runs which were interrupted, completed tenants are skipped by their checkpoint
+          for (final String tenantIdentifier : this.tenantIdentifiers) {
+            this.seedTenant(tenantIdentifier, false);
+          }
+        }
       }
     } finally {
-      ServiceRunner.provisionerService.kill();
+      // on demand services are assigned to the tenants when they are activated, which needs the provisioner
+      if (!lazyModeEnabled) {
+        this.serviceActivator.deactivate(ServiceRunner.provisionerService.name());
+      }
+    }
+
+    if (lazyModeEnabled) {
+      this.serviceActivator.onActivation(microservice -> this.migrateApplication(microservice.name()));
+    }
+
+    if (this.environment.containsProperty("demoserver.load")) {
+      this.runLoad(this.environment.getProperty("demoserver.load"));
     }
 
     System.out.println(identityManager.toString());
@@ -332,8 +460,9 @@ public class ServiceRunner {
       final String nextLine = scanner.nextLine();
       if (nextLine != null && nextLine.equals("exit")) {
         run = false;
+      } else if (nextLine != null) {
+        this.handleAdminCommand(nextLine.trim());
       }
-      eventRecorder.clear();
     }
   }
 
@@ -342,84 +471,380 @@ public class ServiceRunner {
       microservice.runInDebug();
     }
     microservice.addProperties(properties);
-    microservice.start();
-    final boolean registered = microservice.waitTillRegistered(discoveryClient);
-    logger.info("Service '{}' started and {} with Eureka.", microservice.name(), registered ? "registered" : "not registered");
+    microservice.addProperties(this.poolProfile.properties(microservice.name()));
+    final long startedAt = System.nanoTime();
+    boolean started = false;
+    boolean registered = false;
+    try (final PhaseProfiler.Phase ignored = this.profiler.phase("startService " + microservice.name(), null)) {
+      microservice.start();
+      started = true;
+      registered = microservice.waitTillRegistered(discoveryClient);
+    } finally {
+      // the activator only tracks services which started successfully, so stopAll would never reap this process
+      if (started && !registered) {
+        microservice.kill();
+      }
+    }
+    if (!registered) {
+      throw new IllegalStateException("Service '" + microservice.name() + "' did not register with Eureka.");
+    }
+    logger.info("Service '{}' started and registered with Eureka in {} ms, {} connection pool [{}].", microservice.name(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), this.poolProfile, this.poolProfile.sizing(microservice.name()));
     if (this.runInDebug) {
       logger.info("Service '{}' started with debug port {}.", microservice.name(), microservice.debuggingPort());
     }
-    microservice.setApiFactory(this.apiFactory);
+    microservice.setApiFactory(this.timedApiFactory);
   }
 
-  private void migrateServices() {
-    final AuthenticationResponse authenticationResponse =
-        ServiceRunner.provisionerService.api().authenticate(ServiceRunner.CLIENT_ID, ApiConstants.SYSTEM_SU, "oS/0IiAME/2unkN1momDrhAdNKOhGykYFH/mJN20");
+  private <T> Microservice<T> microservice(final Class<T> clazz, final String artifactName) {
+    final Microservice<T> microservice = new Microservice<>(clazz, artifactName, SERVICE_VERSION, ServiceRunner.INTEGRATION_TEST_ENVIRONMENT);
+    this.artifacts.register(microservice.name(), artifactName);
+    return microservice;
+  }
 
-    try (final AutoSeshat ignored = new AutoSeshat(authenticationResponse.getToken())) {
-      final List<Tenant> tenants = ServiceRunner.provisionerService.api().getTenants();
-      tenants.forEach(tenant -> {
-        final List<AssignedApplication> assignedApplications = ServiceRunner.provisionerService.api().getAssignedApplications(tenant.getIdentifier());
-        assignedApplications.forEach(assignedApplication -> {
-          if (assignedApplication.getName().equals(ServiceRunner.identityManager.name())) {
-            ServiceRunner.provisionerService.api().assignIdentityManager(tenant.getIdentifier(), assignedApplication);
-          } else {
-            ServiceRunner.provisionerService.api().assignApplications(tenant.getIdentifier(), Collections.singletonList(assignedApplication));
-          }
-        });
-      });
+  private void migrateServices() throws Exception {
+    // services which are not running yet get migrated when they are activated
+    this.tenantIdentifiers.addAll(this.serviceMigration().migrate(applicationName -> !this.serviceActivator.isStopped(applicationName)));
+    logger.info("Provisioning registry checksum {}.", this.registry.checksum());
+  }
+
+  private void migrateApplication(final String applicationName) throws Exception {
+    this.serviceMigration().migrate(applicationName::equals);
+  }
+
+  private ServiceMigration serviceMigration() {
+    final Map<String, String> uris = new HashMap<>();
+    final Map<String, String> builds = new HashMap<>();
+    this.applications().forEach(microservice -> {
+      uris.put(microservice.name(), microservice.uri());
+      builds.put(microservice.name(), this.artifacts.checksum(microservice.name()));
+    });
+    return new ServiceMigration(logger, ServiceRunner.provisionerService.api(), this::provisionerToken,
+        ServiceRunner.identityManager.name(), builds, uris, this.registry,
+        this.environment.containsProperty("demoserver.migration.force"), this.provisionParallelism());
+  }
+
+  /**
+   * @return the services which are provisioned as applications for the tenants
+   */
+  private List<Microservice<?>> applications() {
+    final List<Microservice<?>> applications = new ArrayList<>(Arrays.asList(ServiceRunner.identityManager,
+        ServiceRunner.rhythmManager, ServiceRunner.organizationManager, ServiceRunner.customerManager));
+    if (!liteModeEnabled) {
+      applications.addAll(Arrays.asList(ServiceRunner.ledgerManager, ServiceRunner.portfolioManager,
+          ServiceRunner.depositAccountManager, ServiceRunner.tellerManager, ServiceRunner.reportManager,
+          ServiceRunner.chequeManager, ServiceRunner.payrollManager, ServiceRunner.groupManager,
+          ServiceRunner.notificationManager));
+    }
+    return applications;
+  }
+
+  /**
+   * Handles the admin commands "status", "start &lt;service&gt;" and "stop &lt;service&gt;" typed on the console.
+   *
+   * @return true if the line was an admin command
+   */
+  private boolean handleAdminCommand(final String line) {
+    final String[] command = line.split("\\s+");
+    try {
+      if (command.length == 1 && command[0].equals("status")) {
+        this.serviceActivator.status().forEach(System.out::println);
+        return true;
+      } else if (command.length == 1 && command[0].equals("clear")) {
+        // concurrent load or seed runs may be waiting on events of the history
+        this.eventRecorder.clear();
+        return true;
+      } else if (command.length == 1 && command[0].equals("events")) {
+        this.eventDispatcher.stats().forEach(System.out::println);
+        System.out.println(this.eventRecorder.stats());
+        return true;
+      } else if (command.length >= 2 && command.length <= 4 && command[0].equals("replay")) {
+        final double speed = command.length < 3 ? 1.0D : command[2].equals("max") ? 0.0D : Double.parseDouble(command[2]);
+        final String tenant = command.length == 4 ? command[3] : null;
+        System.out.println(this.eventReplay.replay(Paths.get(command[1]), tenant, speed));
+        return true;
+      } else if (command.length == 1 && command[0].equals("logs")) {
+        DroppedLogEvents.snapshot().forEach((source, count) -> System.out.println("dropped " + source + ": " + count));
+        return true;
+      } else if (command.length == 1 && command[0].equals("latency")) {
+        this.apiStats.report().forEach(System.out::println);
+        return true;
+      } else if (command.length == 2 && command[0].equals("latency") && command[1].equals("reset")) {
+        this.apiStats.reset();
+        return true;
+      } else if (command.length == 2 && command[0].equals("load")) {
+        this.runLoad(command[1]);
+        return true;
+      } else if (command.length == 2 && command[0].equals("start")) {
+        this.serviceActivator.activate(command[1]);
+        return true;
+      } else if (command.length == 2 && command[0].equals("stop")) {
+        this.serviceActivator.deactivate(command[1]);
+        return true;
+      }
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return true;
+    } catch (final Exception ex) {
+      logger.error("Admin command '{}' failed.", line, ex);
+      System.out.println("Admin command '" + line + "' failed: " + ex.getMessage());
+      return true;
+    }
+    return false;
+  }
+
+  private void writeEventMetrics(final MetricsEndpoint.Metrics metrics) {
+    for (final EventDispatcher.DestinationStats destination : this.eventDispatcher.stats()) {
+      final String name = destination.getDestination();
+      metrics.counter("demoserver_events_received_total", "Messages received per destination.", destination.getReceived(), "destination", name)
+          .counter("demoserver_events_recorded_total", "Events recorded per destination.", destination.getRecorded(), "destination", name)
+          .counter("demoserver_events_unrouted_total", "Messages without a handler per destination.", destination.getUnrouted(), "destination", name)
+          .counter("demoserver_events_failed_total", "Messages which failed to record per destination.", destination.getFailed(), "destination", name)
+          .gauge("demoserver_events_queued", "Messages waiting to be recorded per destination.", destination.getQueued(), "destination", name)
+          .gauge("demoserver_event_consumers", "Threads recording the events of the destination.", destination.getConcurrency(), "destination", name)
+          .counter("demoserver_event_lag_seconds_sum", "Time from publishing to recording, summed up per destination.",
+              destination.getTotalLagMillis() / 1000.0D, "destination", name)
+          .gauge("demoserver_event_lag_seconds_max", "Longest time from publishing to recording per destination.",
+              destination.getMaxLagMillis() / 1000.0D, "destination", name);
+    }
+
+    final IndexedEventRecorder.Stats recorder = this.eventRecorder.stats();
+    metrics.gauge("demoserver_recorder_events", "Events in the recorder history.", recorder.getEvents())
+        .gauge("demoserver_recorder_tenants", "Tenants with events in the recorder history.", recorder.getTenants())
+        .gauge("demoserver_recorder_index_entries", "Entries in the recorder index.", recorder.getIndexEntries())
+        .gauge("demoserver_recorder_bytes", "Approximate heap size of the recorder history.", recorder.getApproximateBytes())
+        .gauge("demoserver_recorder_pending_waits", "Waits for events which have not arrived yet.", recorder.getPendingWaits())
+        .counter("demoserver_recorder_evicted_total", "Events evicted from the recorder history.", recorder.getEvicted())
+        .counter("demoserver_recorder_wait_seconds_count", "Waits for events.", recorder.getWaits())
+        .counter("demoserver_recorder_wait_seconds_sum", "Time spent waiting for events.", recorder.getWaitNanos() / 1_000_000_000.0D)
+        .counter("demoserver_recorder_wait_timeouts_total", "Waits for events which timed out.", recorder.getWaitTimeouts());
+  }
+
+  private void writeServiceMetrics(final MetricsEndpoint.Metrics metrics) {
+    if (this.serviceActivator != null) {
+      for (final ServiceActivator.ServiceState service : this.serviceActivator.status()) {
+        metrics.gauge("demoserver_service_running", "1 if the micro-service process is running.", service.running() ? 1 : 0, "service", service.name())
+            .gauge("demoserver_service_starting", "1 while the micro-service is being started.", service.starting() ? 1 : 0, "service", service.name())
+            .gauge("demoserver_service_registered", "1 if the micro-service is registered with Eureka.",
+                this.discoveryClient.getInstances(service.name()).isEmpty() ? 0 : 1, "service", service.name())
+            .gauge("demoserver_service_startup_seconds", "Time the last start of the micro-service took until it registered.",
+                service.startupMillis() / 1000.0D, "service", service.name());
+      }
+    }
+
+    for (final LatencyStats.Snapshot call : this.apiStats.snapshots()) {
+      for (final double quantile : new double[]{0.5D, 0.9D, 0.99D, 0.999D}) {
+        metrics.summary("demoserver_api_call_seconds", "", "Latency of the API client calls to the micro-services.",
+            call.percentileSeconds(quantile * 100.0D), "method", call.operation(), "quantile", Double.toString(quantile));
+      }
+      metrics.summary("demoserver_api_call_seconds", "_sum", "Latency of the API client calls to the micro-services.",
+          call.totalSeconds(), "method", call.operation())
+          .summary("demoserver_api_call_seconds", "_count", "Latency of the API client calls to the micro-services.",
+              call.calls(), "method", call.operation())
+          .counter("demoserver_api_call_errors_total", "Failed API client calls to the micro-services.", call.errors(), "method", call.operation());
+    }
+  }
+
+  private void writeDataStoreMetrics(final MetricsEndpoint.Metrics metrics) {
+    if (isPersistent) {
+      return;
     }
+    metrics.gauge("demoserver_datastore_up", "1 if the embedded data store accepts connections.", this.postgresUp() ? 1 : 0, "datastore", "postgres")
+        .gauge("demoserver_datastore_up", "1 if the embedded data store accepts connections.",
+            this.cassandraStarted && StorageService.instance.isNativeTransportRunning() ? 1 : 0, "datastore", "cassandra");
   }
 
-  private void provisionAppsViaSeshat() throws InterruptedException, IOException {
-    final List<Application> applicationsToCreate = new ArrayList<>();
-    applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.identityManager.name(), ServiceRunner.identityManager.uri()));
-    applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.rhythmManager.name(), ServiceRunner.rhythmManager.uri()));
-    applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.organizationManager.name(), ServiceRunner.organizationManager.uri()));
-    applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.customerManager.name(), ServiceRunner.customerManager.uri()));
+  private synchronized boolean postgresUp() {
+    if (ServiceRunner.embeddedPostgres == null) {
+      return false;
+    }
+    try {
+      if (this.postgresProbe == null || !this.postgresProbe.isValid(1)) {
+        this.closePostgresProbe();
+        this.postgresProbe = ServiceRunner.embeddedPostgres.getPostgresDatabase().getConnection();
+      }
+      return true;
+    } catch (final SQLException ex) {
+      logger.debug("Embedded Postgres is not reachable.", ex);
+      return false;
+    }
+  }
+
+  private synchronized void closePostgresProbe() {
+    if (this.postgresProbe != null) {
+      try {
+        this.postgresProbe.close();
+      } catch (final SQLException ex) {
+        logger.debug("Could not close the Postgres probe connection.", ex);
+      }
+      this.postgresProbe = null;
+    }
+  }
+
+  private void writeLogMetrics(final MetricsEndpoint.Metrics metrics) {
+    DroppedLogEvents.snapshot().forEach((key, count) -> {
+      final int separator = key.lastIndexOf('/');
+      metrics.counter("demoserver_log_events_dropped_total", "Log events dropped by the asynchronous appenders and the sampling filters.",
+          count, "source", key.substring(0, separator), "reason", key.substring(separator + 1));
+    });
+  }
+
+  private void runLoad(final String profileName) throws Exception {
+    final LoadProfile profile = LoadProfile.forName(profileName);
+    final int workers = this.environment.getProperty("demoserver.load.workers", Integer.class, profile.workers());
+    final long durationSeconds = this.environment.getProperty("demoserver.load.duration", Long.class, (long) profile.durationSeconds());
+    final Map<LoadGenerator.Operation, Integer> mix = this.environment.containsProperty("demoserver.load.mix")
+        ? LoadProfile.parseMix(this.environment.getProperty("demoserver.load.mix"))
+        : profile.mix();
 
     if (!liteModeEnabled) {
-      applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.ledgerManager.name(), ServiceRunner.ledgerManager.uri()));
-      applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.portfolioManager.name(), ServiceRunner.portfolioManager.uri()));
-      applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.depositAccountManager.name(), ServiceRunner.depositAccountManager.uri()));
-      applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.tellerManager.name(), ServiceRunner.tellerManager.uri()));
-      applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.reportManager.name(), ServiceRunner.reportManager.uri()));
-      applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.chequeManager.name(), ServiceRunner.chequeManager.uri()));
-      applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.payrollManager.name(), ServiceRunner.payrollManager.uri()));
-      applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.groupManager.name(), ServiceRunner.groupManager.uri()));
-      applicationsToCreate.add(ApplicationBuilder.create(ServiceRunner.notificationManager.name(), ServiceRunner.notificationManager.uri()));
+      this.serviceActivator.activate(ServiceRunner.ledgerManager.name());
+    }
+    final UserWithPassword loadUser = new UserWithPassword();
+    loadUser.setIdentifier(LOAD_USER_NAME);
+    loadUser.setPassword(encodePassword(LOAD_USER_PASSWORD));
+
+    // the load user is only created for tenants provisioned with demoserver.load set
+    final List<String> loadTenants = new ArrayList<>();
+    for (final String tenantIdentifier : this.tenantIdentifiers) {
+      try {
+        this.accessToken(tenantIdentifier, loadUser.getIdentifier(), loadUser.getPassword());
+        loadTenants.add(tenantIdentifier);
+      } catch (final RuntimeException ex) {
+        logger.warn("Load user '{}' cannot log in to tenant '{}', the tenant is left out of the load run.",
+            loadUser.getIdentifier(), tenantIdentifier);
+        System.out.println("Load user '" + loadUser.getIdentifier() + "' is missing in tenant '" + tenantIdentifier
+            + "', it is created when provisioning with demoserver.load set.");
+      }
+    }
+    if (loadTenants.isEmpty() && !this.tenantIdentifiers.isEmpty()) {
+      System.out.println("No tenant has load user '" + loadUser.getIdentifier() + "', load not run.");
+      return;
     }
 
-    try (final AutoSeshat ignored = new AutoSeshat(authenticationResponse.getToken())) {
-      applicationsToCreate.forEach(application -> ServiceRunner.provisionerService.api().createApplication(application));
+    this.loadStats.reset();
+    new LoadGenerator(logger, this.eventRecorder, this.profiler, ServiceRunner.identityManager, ServiceRunner.customerManager,
+        liteModeEnabled ? null : ServiceRunner.ledgerManager, loadUser, this.tokens, this.loadStats)
+        .run(loadTenants, workers, TimeUnit.SECONDS.toMillis(durationSeconds), mix);
+    this.loadStats.report().forEach(line -> {
+      logger.info("Load {}", line);
+      System.out.println(line);
+    });
+  }
+
+  private void provisionAppsViaSeshat() throws Exception {
+    try (final AutoSeshat ignored = new AutoSeshat(this.provisionerToken())) {
+      // applications the provisioner knows with the same URI are not created again
+      this.registry.retainApplications(ServiceRunner.provisionerService.api().getApplications());
+      final List<Application> applicationsToCreate = this.applications().stream()
+          .filter(microservice -> !this.registry.isCreated(microservice.name(), microservice.uri()))
+          .map(microservice -> ApplicationBuilder.create(microservice.name(), microservice.uri()))
+          .collect(Collectors.toList());
+      applicationsToCreate.forEach(application -> {
+        ServiceRunner.provisionerService.api().createApplication(application);
+        this.registry.recordApplication(application.getName(), application.getHomepage());
+      });
     }
 
-    for (final Tenant tenant : tenantsToCreate) {
-      try (final AutoSeshat ignored = new AutoSeshat(authenticationResponse.getToken())) {
+    new TenantPipeline(this.logger, "Provisioning apps for", this.provisionParallelism()).run(tenantsToCreate, tenant -> {
+      try (final AutoSeshat ignored = new AutoSeshat(this.provisionerToken());
+           final PhaseProfiler.Phase ignored2 = this.profiler.phase("provisionTenant", tenant.getIdentifier())) {
         provisionAppsViaSeshatForTenant(tenant);
       }
+      this.applications().forEach(microservice ->
+          this.registry.recordAssignment(tenant.getIdentifier(), microservice.name(), this.artifacts.checksum(microservice.name())));
+      if (this.environment.containsProperty("demoserver.seed")) {
+        this.seedTenant(tenant.getIdentifier(), true);
+      }
+      this.tenantIdentifiers.add(tenant.getIdentifier());
+    });
+    this.registry.save();
+    logger.info("Provisioning registry checksum {}.", this.registry.checksum());
+  }
+
+  /**
+   * @param newlyProvisioned true if the tenant has just been created, a checkpoint left by an earlier
+   *                         tenant of the same identifier is discarded then
+   */
+  private void seedTenant(final String tenantIdentifier, final boolean newlyProvisioned) throws Exception {
+    final Map<SeedDataGenerator.Kind, Integer> targets = SeedDataGenerator.parseTargets(this.environment.getProperty("demoserver.seed"));
+    if (!liteModeEnabled) {
+      if (targets.containsKey(SeedDataGenerator.Kind.GROUPS)) {
+        this.serviceActivator.activate(ServiceRunner.groupManager.name());
+      }
+      if (targets.containsKey(SeedDataGenerator.Kind.DEPOSIT_ACCOUNTS)) {
+        this.serviceActivator.activate(ServiceRunner.depositAccountManager.name());
+      }
+      if (targets.containsKey(SeedDataGenerator.Kind.LOANS)) {
+        this.serviceActivator.activate(ServiceRunner.portfolioManager.name());
+      }
+    }
+    try (final PhaseProfiler.Phase ignored = this.profiler.phase("seedTenant", tenantIdentifier)) {
+      final SeedDataGenerator generator = new SeedDataGenerator(logger, this.eventRecorder, this.profiler, ServiceRunner.organizationManager.api(), ServiceRunner.customerManager.api(),
+          liteModeEnabled ? null : ServiceRunner.groupManager.api(),
+          liteModeEnabled ? null : ServiceRunner.depositAccountManager.api(),
+          liteModeEnabled ? null : ServiceRunner.portfolioManager.api(),
+          tenantIdentifier, SEED_USER_NAME, () -> this.accessToken(tenantIdentifier, SEED_USER_NAME, encodePassword(SEED_USER_PASSWORD)),
+          this.environment.getProperty("demoserver.seed.parallelism", Integer.class, DEFAULT_SEED_PARALLELISM),
+          Paths.get(this.environment.getProperty("demoserver.seed.checkpoint", "seed")))
+          .withProducts(this.environment.getProperty("demoserver.seed.depositProduct"), this.environment.getProperty("demoserver.seed.loanProduct"));
+      if (newlyProvisioned) {
+        generator.discardCheckpoint();
+      }
+      generator.run(targets);
     }
   }
 
-  private void createTenants() {
-    this.authenticationResponse = ServiceRunner.provisionerService.api().authenticate(ServiceRunner.CLIENT_ID, ApiConstants.SYSTEM_SU, "oS/0IiAME/2unkN1momDrhAdNKOhGykYFH/mJN20");
+  private String provisionerToken() {
+    return this.tokens.accessToken(null, ApiConstants.SYSTEM_SU, () -> {
+      final AuthenticationResponse authenticationResponse = ServiceRunner.provisionerService.api()
+          .authenticate(ServiceRunner.CLIENT_ID, ApiConstants.SYSTEM_SU, "oS/0IiAME/2unkN1momDrhAdNKOhGykYFH/mJN20");
+      return TokenCache.Token.of(authenticationResponse.getToken(), authenticationResponse.getAccessTokenExpiration());
+    });
+  }
 
-    tenantsToCreate = Arrays.asList(
-        TenantBuilder.create(ServiceRunner.provisionerService.getProcessEnvironment(), "playground", "A place to mess around and have fun", "playground")
-        //TenantBuilder.create(ServiceRunner.provisionerService.getProcessEnvironment(), "demo-cccu", "Demo for CCCU", "demo_cccu"),
-        //TenantBuilder.create(ServiceRunner.provisionerService.getProcessEnvironment(), "SKCUKNS1", "St Kitts Cooperative Credit Union", "SKCUKNS1"),
-        //TenantBuilder.create(ServiceRunner.provisionerService.getProcessEnvironment(), "PCCUKNS1", "Police Cooperative Credit Union", "PCCUKNS1"),
-        //TenantBuilder.create(ServiceRunner.provisionerService.getProcessEnvironment(), "FCCUKNS1", "FND Cooperative Credit Union", "FCCUKNS1"),
-        //TenantBuilder.create(ServiceRunner.provisionerService.getProcessEnvironment(), "NCCUKNN1", "Nevis Cooperative Credit Union", "NCCUKNN1")
-    );
+  /**
+   * @param password the encoded password
+   */
+  private String accessToken(final String tenantIdentifier, final String userName, final String password) {
+    return this.tokens.accessToken(tenantIdentifier, userName, () -> {
+      try (final AutoTenantContext ignored = new AutoTenantContext(tenantIdentifier);
+           final AutoGuest ignored2 = new AutoGuest()) {
+        final Authentication authentication = identityManager.api().login(userName, password);
+        return TokenCache.Token.of(authentication.getAccessToken(), authentication.getAccessTokenExpiration());
+      }
+    });
+  }
 
-    for (final Tenant tenant : tenantsToCreate) {
-      try (final AutoSeshat ignored = new AutoSeshat(authenticationResponse.getToken())) {
+  private void createTenants() throws Exception {
+    if (this.environment.containsProperty("demoserver.tenants.count")) {
+      tenantsToCreate = TenantBuilder.fleet(ServiceRunner.provisionerService.getProcessEnvironment(),
+          this.environment.getProperty("demoserver.tenants.prefix", "tenant"),
+          this.environment.getProperty("demoserver.tenants.count", Integer.class));
+    } else {
+      tenantsToCreate = Arrays.asList(
+          TenantBuilder.create(ServiceRunner.provisionerService.getProcessEnvironment(), "playground", "A place to mess around and have fun", "playground")
+          //TenantBuilder.create(ServiceRunner.provisionerService.getProcessEnvironment(), "demo-cccu", "Demo for CCCU", "demo_cccu"),
+          //TenantBuilder.create(ServiceRunner.provisionerService.getProcessEnvironment(), "SKCUKNS1", "St Kitts Cooperative Credit Union", "SKCUKNS1"),
+          //TenantBuilder.create(ServiceRunner.provisionerService.getProcessEnvironment(), "PCCUKNS1", "Police Cooperative Credit Union", "PCCUKNS1"),
+          //TenantBuilder.create(ServiceRunner.provisionerService.getProcessEnvironment(), "FCCUKNS1", "FND Cooperative Credit Union", "FCCUKNS1"),
+          //TenantBuilder.create(ServiceRunner.provisionerService.getProcessEnvironment(), "NCCUKNN1", "Nevis Cooperative Credit Union", "NCCUKNN1")
+      );
+    }
+
+    new TenantPipeline(this.logger, "Creating", this.provisionParallelism()).run(tenantsToCreate, tenant -> {
+      try (final AutoSeshat ignored = new AutoSeshat(this.provisionerToken());
+           final PhaseProfiler.Phase ignored2 = this.profiler.phase("createTenant", tenant.getIdentifier())) {
         provisionerService.api().createTenant(tenant);
       }
-    }
+    });
   }
 
-  private String provisionAppsViaSeshatForTenant(final Tenant tenant) throws InterruptedException, IOException {
+  private int provisionParallelism() {
+    return this.environment.getProperty("demoserver.provision.parallelism", Integer.class, DEFAULT_PROVISION_PARALLELISM);
+  }
+
+  private String provisionAppsViaSeshatForTenant(final Tenant tenant) throws Exception {
 
     try (final AutoTenantContext ignored = new AutoTenantContext(tenant.getIdentifier())) {
 
@@ -433,6 +858,14 @@ public class ServiceRunner {
 
       final UserWithPassword orgAdminUserPassword = createOrgAdminRoleAndUser(tenantAdminPassword.getAdminPassword());
 
+      if (this.environment.containsProperty("demoserver.load")) {
+        createLoadUserRoleAndPassword(tenantAdminPassword.getAdminPassword());
+      }
+
+      if (this.environment.containsProperty("demoserver.seed")) {
+        createSeedUserRoleAndPassword(tenantAdminPassword.getAdminPassword());
+      }
+
       //Creation of the schedulerUserRole, and permitting it to create application permission requests are needed in the
       //provisioning of portfolio.  Portfolio asks rhythm for a callback.  Rhythm asks identity for permission to send
       //that call back.  Rhythm needs permission to ask identity directly rather than through the provisioner because
@@ -440,51 +873,53 @@ public class ServiceRunner {
 
       if (!liteModeEnabled) {
         final UserWithPassword schedulerUser = createSchedulerUserRoleAndPassword(tenantAdminPassword.getAdminPassword());
-        Assert.assertTrue(this.eventRecorder.wait(EventConstants.OPERATION_POST_APPLICATION_PERMISSION, new ApplicationPermissionEvent(rhythmManager.name(), org.apache.fineract.cn.identity.api.v1.PermittableGroupIds.APPLICATION_SELF_MANAGEMENT)));
+        this.awaitEvent(EventConstants.OPERATION_POST_APPLICATION_PERMISSION, new ApplicationPermissionEvent(rhythmManager.name(), org.apache.fineract.cn.identity.api.v1.PermittableGroupIds.APPLICATION_SELF_MANAGEMENT));
 
-        final Authentication schedulerUserAuthentication;
         try (final AutoGuest ignored2 = new AutoGuest()) {
           enableUser(schedulerUser);
-          schedulerUserAuthentication = identityManager.api().login(schedulerUser.getIdentifier(), schedulerUser.getPassword());
         }
 
-        try (final AutoUserContext ignored2 = new AutoUserContext(schedulerUser.getIdentifier(), schedulerUserAuthentication.getAccessToken())) {
+        try (final AutoUserContext ignored2 = new AutoUserContext(schedulerUser.getIdentifier(),
+            this.accessToken(tenant.getIdentifier(), schedulerUser.getIdentifier(), schedulerUser.getPassword()))) {
           identityManager.api().setApplicationPermissionEnabledForUser(
               rhythmManager.name(),
               org.apache.fineract.cn.identity.api.v1.PermittableGroupIds.APPLICATION_SELF_MANAGEMENT,
               schedulerUser.getIdentifier(),
               true);
-          Assert.assertTrue(this.eventRecorder.wait(EventConstants.OPERATION_PUT_APPLICATION_PERMISSION_USER_ENABLED, new ApplicationPermissionUserEvent(rhythmManager.name(), org.apache.fineract.cn.identity.api.v1.PermittableGroupIds.APPLICATION_SELF_MANAGEMENT, schedulerUser.getIdentifier())));
+          this.awaitEvent(EventConstants.OPERATION_PUT_APPLICATION_PERMISSION_USER_ENABLED, new ApplicationPermissionUserEvent(rhythmManager.name(), org.apache.fineract.cn.identity.api.v1.PermittableGroupIds.APPLICATION_SELF_MANAGEMENT, schedulerUser.getIdentifier()));
         }
 
         provisionApp(tenant, ledgerManager, org.apache.fineract.cn.accounting.api.v1.EventConstants.INITIALIZE);
 
         provisionApp(tenant, portfolioManager, org.apache.fineract.cn.portfolio.api.v1.events.EventConstants.INITIALIZE);
 
-        Assert.assertTrue(this.eventRecorder.wait(EventConstants.OPERATION_POST_PERMITTABLE_GROUP,
-            org.apache.fineract.cn.rhythm.spi.v1.PermittableGroupIds.forApplication(portfolioManager.name())));
+        this.awaitEvent(EventConstants.OPERATION_POST_PERMITTABLE_GROUP,
+            org.apache.fineract.cn.rhythm.spi.v1.PermittableGroupIds.forApplication(portfolioManager.name()));
 
-        for (int i = 0; i < 24; i++) {
-          Assert.assertTrue("Beat #" + i,
-              eventRecorder.wait(org.apache.fineract.cn.rhythm.api.v1.events.EventConstants.POST_BEAT,
-                  new BeatEvent(portfolioManager.name(), "alignment" + i)));
+        final List<BeatEvent> alignmentBeats = IntStream.range(0, 24)
+            .mapToObj(i -> new BeatEvent(portfolioManager.name(), "alignment" + i))
+            .collect(Collectors.toList());
+        final Set<BeatEvent> missingBeats;
+        try (final PhaseProfiler.Phase ignored2 = this.profiler.phase("wait " + org.apache.fineract.cn.rhythm.api.v1.events.EventConstants.POST_BEAT)) {
+          missingBeats = eventRecorder.waitForAll(
+              org.apache.fineract.cn.rhythm.api.v1.events.EventConstants.POST_BEAT, alignmentBeats);
         }
+        Assert.assertTrue("Missing beats " + missingBeats.stream().map(BeatEvent::getBeatIdentifier).collect(Collectors.toList()),
+            missingBeats.isEmpty());
 
-        final Authentication schedulerAuthentication;
-        try (final AutoGuest ignored2 = new AutoGuest()) {
-          schedulerAuthentication = identityManager.api().login(schedulerUser.getIdentifier(), schedulerUser.getPassword());
-        }
-
-        try (final AutoUserContext ignored2 = new AutoUserContext(schedulerUser.getIdentifier(), schedulerAuthentication.getAccessToken())) {
+        // the permissions granted with a token are fixed at login, and portfolio's permittable group is new
+        this.tokens.invalidate(tenant.getIdentifier(), schedulerUser.getIdentifier());
+        try (final AutoUserContext ignored2 = new AutoUserContext(schedulerUser.getIdentifier(),
+            this.accessToken(tenant.getIdentifier(), schedulerUser.getIdentifier(), schedulerUser.getPassword()))) {
           //Allow rhythm to send a beat to portfolio as the scheduler user.
           identityManager.api().setApplicationPermissionEnabledForUser(
               rhythmManager.name(),
               org.apache.fineract.cn.rhythm.spi.v1.PermittableGroupIds.forApplication(portfolioManager.name()),
               schedulerUser.getIdentifier(),
               true);
-          Assert.assertTrue(this.eventRecorder.wait(EventConstants.OPERATION_PUT_APPLICATION_PERMISSION_USER_ENABLED,
+          this.awaitEvent(EventConstants.OPERATION_PUT_APPLICATION_PERMISSION_USER_ENABLED,
               new ApplicationPermissionUserEvent(rhythmManager.name(),
-                  org.apache.fineract.cn.rhythm.spi.v1.PermittableGroupIds.forApplication(portfolioManager.name()), schedulerUser.getIdentifier())));
+                  org.apache.fineract.cn.rhythm.spi.v1.PermittableGroupIds.forApplication(portfolioManager.name()), schedulerUser.getIdentifier()));
         }
 
         provisionApp(tenant, depositAccountManager, org.apache.fineract.cn.deposit.api.v1.EventConstants.INITIALIZE);
@@ -501,44 +936,44 @@ public class ServiceRunner {
 
         provisionApp(tenant, ServiceRunner.notificationManager, org.apache.fineract.cn.notification.api.v1.events.NotificationEventConstants.INITIALIZE);
 
-        createChartOfAccounts(orgAdminUserPassword);
+        createChartOfAccounts(tenant, orgAdminUserPassword);
       }
 
       return tenantAdminPassword.getAdminPassword();
     }
   }
 
-  private void createChartOfAccounts(final UserWithPassword userWithPassword) throws IOException, InterruptedException {
-    final Authentication authentication;
-    try (final AutoGuest ignored = new AutoGuest()) {
-      authentication = identityManager.api().login(userWithPassword.getIdentifier(), userWithPassword.getPassword());
+  private void createChartOfAccounts(final Tenant tenant, final UserWithPassword userWithPassword) throws IOException, InterruptedException {
+    try (final PhaseProfiler.Phase ignored0 = this.profiler.phase("createChartOfAccounts", tenant.getIdentifier())) {
+      final ChartOfAccountsImporter importer = new ChartOfAccountsImporter(logger, this.eventRecorder, this.profiler, ledgerManager.api(),
+          tenant.getIdentifier(), userWithPassword.getIdentifier(),
+          () -> this.accessToken(tenant.getIdentifier(), userWithPassword.getIdentifier(), userWithPassword.getPassword()),
+          this.environment.getProperty("demoserver.chartOfAccounts.parallelism", Integer.class, DEFAULT_CHART_OF_ACCOUNTS_PARALLELISM));
+      importer.importLedgers(this.chartOfAccountsResource("ledgers.csv"));
+      importer.importAccounts(this.chartOfAccountsResource("accounts.csv"));
     }
+  }
 
-    try (final AutoUserContext ignored = new AutoUserContext(userWithPassword.getIdentifier(), authentication.getAccessToken())) {
-      final LedgerImporter ledgerImporter = new LedgerImporter(ledgerManager.api(), logger);
-      final URL ledgersUrl = ServiceRunner.class.getResource("/standardChartOfAccounts/ledgers.csv");
-      ledgerImporter.importCSV(ledgersUrl);
-      Assert.assertTrue(this.eventRecorder.wait(POST_LEDGER, LOAN_INCOME_LEDGER));
-
-      final AccountImporter accountImporter = new AccountImporter(ledgerManager.api(), logger);
-      final URL accountsUrl = ServiceRunner.class.getResource("/standardChartOfAccounts/accounts.csv");
-      accountImporter.importCSV(accountsUrl);
-      Assert.assertTrue(this.eventRecorder.wait(POST_ACCOUNT, "9330"));
-
-      identityManager.api().logout();
+  private URL chartOfAccountsResource(final String fileName) throws MalformedURLException {
+    if (this.environment.containsProperty("demoserver.chartOfAccounts")) {
+      return Paths.get(this.environment.getProperty("demoserver.chartOfAccounts"), fileName).toUri().toURL();
     }
+    return ServiceRunner.class.getResource("/standardChartOfAccounts/" + fileName);
   }
 
   private <T> void provisionApp(
       final Tenant tenant,
       final Microservice<T> service,
-      final String initialize_event) throws InterruptedException {
+      final String initialize_event) throws Exception {
+    this.serviceActivator.activate(service.name());
     logger.info("Provisioning service '{}', for tenant '{}'.", service.name(), tenant.getName());
 
     final AssignedApplication assignedApp = new AssignedApplication();
     assignedApp.setName(service.name());
 
-    provisionerService.api().assignApplications(tenant.getIdentifier(), Collections.singletonList(assignedApp));
+    try (final PhaseProfiler.Phase ignored = this.profiler.phase("provisionApp " + service.name(), tenant.getIdentifier())) {
+      provisionerService.api().assignApplications(tenant.getIdentifier(), Collections.singletonList(assignedApp));
+    }
 
     /*Assert.assertTrue(this.eventRecorder.wait(initialize_event, initialize_event));
     Assert.assertTrue(this.eventRecorder.waitForMatch(EventConstants.OPERATION_PUT_APPLICATION_SIGNATURE,
@@ -546,13 +981,8 @@ public class ServiceRunner {
   }
 
   private UserWithPassword createSchedulerUserRoleAndPassword(String tenantAdminPassword) throws InterruptedException {
-    final Authentication adminAuthentication;
-    try (final AutoGuest ignored = new AutoGuest()) {
-      adminAuthentication = identityManager.api().login(ADMIN_USER_NAME, tenantAdminPassword);
-    }
-
     final UserWithPassword schedulerUser;
-    try (final AutoUserContext ignored = new AutoUserContext(ADMIN_USER_NAME, adminAuthentication.getAccessToken())) {
+    try (final AutoUserContext ignored = new AutoUserContext(ADMIN_USER_NAME, this.adminToken(tenantAdminPassword))) {
       final Role schedulerRole = defineSchedulerRole();
       identityManager.api().createRole(schedulerRole);
 
@@ -562,7 +992,7 @@ public class ServiceRunner {
       schedulerUser.setRole(schedulerRole.getIdentifier());
 
       identityManager.api().createUser(schedulerUser);
-      Assert.assertTrue(eventRecorder.wait(EventConstants.OPERATION_POST_USER, schedulerUser.getIdentifier()));
+      this.awaitEvent(EventConstants.OPERATION_POST_USER, schedulerUser.getIdentifier());
     }
 
     try (final AutoGuest ignored = new AutoGuest()) {
@@ -572,6 +1002,106 @@ public class ServiceRunner {
     return schedulerUser;
   }
 
+  private void createLoadUserRoleAndPassword(final String tenantAdminPassword) throws InterruptedException {
+    this.createUserWithRole(tenantAdminPassword, defineLoadRole(), LOAD_USER_NAME, LOAD_USER_PASSWORD);
+  }
+
+  private void createSeedUserRoleAndPassword(final String tenantAdminPassword) throws InterruptedException {
+    this.createUserWithRole(tenantAdminPassword, defineSeedRole(), SEED_USER_NAME, SEED_USER_PASSWORD);
+  }
+
+  private void createUserWithRole(final String tenantAdminPassword, final Role role, final String userName, final String password)
+      throws InterruptedException {
+    final UserWithPassword user;
+    try (final AutoUserContext ignored = new AutoUserContext(ADMIN_USER_NAME, this.adminToken(tenantAdminPassword))) {
+      identityManager.api().createRole(role);
+      this.awaitEvent(EventConstants.OPERATION_POST_ROLE, role.getIdentifier());
+
+      user = new UserWithPassword();
+      user.setIdentifier(userName);
+      user.setPassword(encodePassword(password));
+      user.setRole(role.getIdentifier());
+
+      identityManager.api().createUser(user);
+      this.awaitEvent(EventConstants.OPERATION_POST_USER, user.getIdentifier());
+    }
+
+    try (final AutoGuest ignored = new AutoGuest()) {
+      enableUser(user);
+    }
+  }
+
+  private Role defineLoadRole() {
+    final Permission selfManagementPermission = new Permission();
+    selfManagementPermission.setAllowedOperations(AllowedOperation.ALL);
+    selfManagementPermission.setPermittableEndpointGroupIdentifier(org.apache.fineract.cn.identity.api.v1.PermittableGroupIds.SELF_MANAGEMENT);
+
+    final Permission customerPermission = new Permission();
+    customerPermission.setAllowedOperations(AllowedOperation.ALL);
+    customerPermission.setPermittableEndpointGroupIdentifier(org.apache.fineract.cn.customer.PermittableGroupIds.CUSTOMER);
+
+    final Permission ledgerManagementPermission = new Permission();
+    ledgerManagementPermission.setAllowedOperations(AllowedOperation.ALL);
+    ledgerManagementPermission.setPermittableEndpointGroupIdentifier(org.apache.fineract.cn.accounting.api.v1.PermittableGroupIds.THOTH_LEDGER);
+
+    final Permission accountManagementPermission = new Permission();
+    accountManagementPermission.setAllowedOperations(AllowedOperation.ALL);
+    accountManagementPermission.setPermittableEndpointGroupIdentifier(org.apache.fineract.cn.accounting.api.v1.PermittableGroupIds.THOTH_ACCOUNT);
+
+    final Role role = new Role();
+    role.setIdentifier("loadgenerator");
+    role.setPermissions(Arrays.asList(selfManagementPermission, customerPermission, ledgerManagementPermission, accountManagementPermission));
+
+    return role;
+  }
+
+  private Role defineSeedRole() {
+    final Permission selfManagementPermission = new Permission();
+    selfManagementPermission.setAllowedOperations(AllowedOperation.ALL);
+    selfManagementPermission.setPermittableEndpointGroupIdentifier(org.apache.fineract.cn.identity.api.v1.PermittableGroupIds.SELF_MANAGEMENT);
+
+    final Permission officePermission = new Permission();
+    officePermission.setAllowedOperations(AllowedOperation.ALL);
+    officePermission.setPermittableEndpointGroupIdentifier(org.apache.fineract.cn.office.api.v1.PermittableGroupIds.OFFICE_MANAGEMENT);
+
+    final Permission employeePermission = new Permission();
+    employeePermission.setAllowedOperations(AllowedOperation.ALL);
+    employeePermission.setPermittableEndpointGroupIdentifier(org.apache.fineract.cn.office.api.v1.PermittableGroupIds.EMPLOYEE_MANAGEMENT);
+
+    final Permission customerPermission = new Permission();
+    customerPermission.setAllowedOperations(AllowedOperation.ALL);
+    customerPermission.setPermittableEndpointGroupIdentifier(org.apache.fineract.cn.customer.PermittableGroupIds.CUSTOMER);
+
+    final List<Permission> permissions = new ArrayList<>(Arrays.asList(selfManagementPermission, officePermission, employeePermission, customerPermission));
+    if (!liteModeEnabled) {
+      final Permission groupPermission = new Permission();
+      groupPermission.setAllowedOperations(AllowedOperation.ALL);
+      groupPermission.setPermittableEndpointGroupIdentifier(org.apache.fineract.cn.group.api.v1.PermittableGroupIds.GROUP);
+      permissions.add(groupPermission);
+
+      final Permission groupDefinitionPermission = new Permission();
+      groupDefinitionPermission.setAllowedOperations(AllowedOperation.ALL);
+      groupDefinitionPermission.setPermittableEndpointGroupIdentifier(org.apache.fineract.cn.group.api.v1.PermittableGroupIds.DEFINITION);
+      permissions.add(groupDefinitionPermission);
+
+      final Permission depositPermission = new Permission();
+      depositPermission.setAllowedOperations(AllowedOperation.ALL);
+      depositPermission.setPermittableEndpointGroupIdentifier(org.apache.fineract.cn.deposit.api.v1.PermittableGroupIds.INSTANCE_MANAGEMENT);
+      permissions.add(depositPermission);
+
+      final Permission casePermission = new Permission();
+      casePermission.setAllowedOperations(AllowedOperation.ALL);
+      casePermission.setPermittableEndpointGroupIdentifier(org.apache.fineract.cn.portfolio.api.v1.PermittableGroupIds.CASE_MANAGEMENT);
+      permissions.add(casePermission);
+    }
+
+    final Role role = new Role();
+    role.setIdentifier("seeder");
+    role.setPermissions(permissions);
+
+    return role;
+  }
+
   private Role defineSchedulerRole() {
     final Permission permissionRequestionCreationPermission = new Permission();
     permissionRequestionCreationPermission.setAllowedOperations(Collections.singleton(AllowedOperation.CHANGE));
@@ -589,16 +1119,11 @@ public class ServiceRunner {
   }
 
   private UserWithPassword createOrgAdminRoleAndUser(final String tenantAdminPassword) throws InterruptedException {
-    final Authentication adminAuthentication;
-    try (final AutoUserContext ignored = new AutoGuest()) {
-      adminAuthentication = ServiceRunner.identityManager.api().login(ADMIN_USER_NAME, tenantAdminPassword);
-    }
-
-    try (final AutoUserContext ignored = new AutoUserContext(ADMIN_USER_NAME, adminAuthentication.getAccessToken())) {
+    try (final AutoUserContext ignored = new AutoUserContext(ADMIN_USER_NAME, this.adminToken(tenantAdminPassword))) {
       final Role fimsAdministratorRole = defineOrgAdministratorRole();
 
       ServiceRunner.identityManager.api().createRole(fimsAdministratorRole);
-      Assert.assertTrue(this.eventRecorder.wait(EventConstants.OPERATION_POST_ROLE, fimsAdministratorRole.getIdentifier()));
+      this.awaitEvent(EventConstants.OPERATION_POST_ROLE, fimsAdministratorRole.getIdentifier());
 
       final UserWithPassword fimsAdministratorUser = new UserWithPassword();
       fimsAdministratorUser.setIdentifier("operator");
@@ -606,9 +1131,7 @@ public class ServiceRunner {
       fimsAdministratorUser.setRole(fimsAdministratorRole.getIdentifier());
 
       ServiceRunner.identityManager.api().createUser(fimsAdministratorUser);
-      Assert.assertTrue(this.eventRecorder.wait(EventConstants.OPERATION_POST_USER, fimsAdministratorUser.getIdentifier()));
-
-      ServiceRunner.identityManager.api().logout();
+      this.awaitEvent(EventConstants.OPERATION_POST_USER, fimsAdministratorUser.getIdentifier());
 
       enableUser(fimsAdministratorUser);
       return fimsAdministratorUser;
@@ -666,15 +1189,29 @@ public class ServiceRunner {
     return role;
   }
 
+  private String adminToken(final String tenantAdminPassword) {
+    return this.accessToken(TenantContextHolder.checkedGetIdentifier(), ADMIN_USER_NAME, tenantAdminPassword);
+  }
+
   private void enableUser(final UserWithPassword userWithPassword) throws InterruptedException {
-    final Authentication passwordOnlyAuthentication
-        = identityManager.api().login(userWithPassword.getIdentifier(), userWithPassword.getPassword());
-    try (final AutoUserContext ignored
-             = new AutoUserContext(userWithPassword.getIdentifier(), passwordOnlyAuthentication.getAccessToken())) {
-      identityManager.api().changeUserPassword(
-          userWithPassword.getIdentifier(), new Password(userWithPassword.getPassword()));
-      Assert.assertTrue(eventRecorder.wait(EventConstants.OPERATION_PUT_USER_PASSWORD,
-          userWithPassword.getIdentifier()));
+    try (final PhaseProfiler.Phase ignored = this.profiler.phase("enableUser " + userWithPassword.getIdentifier())) {
+      final Authentication passwordOnlyAuthentication
+          = identityManager.api().login(userWithPassword.getIdentifier(), userWithPassword.getPassword());
+      try (final AutoUserContext ignored2
+               = new AutoUserContext(userWithPassword.getIdentifier(), passwordOnlyAuthentication.getAccessToken())) {
+        identityManager.api().changeUserPassword(
+            userWithPassword.getIdentifier(), new Password(userWithPassword.getPassword()));
+        this.awaitEvent(EventConstants.OPERATION_PUT_USER_PASSWORD,
+            userWithPassword.getIdentifier());
+      }
+      // a token from before the password change only allows changing the password
+      this.tokens.invalidate(TenantContextHolder.checkedGetIdentifier(), userWithPassword.getIdentifier());
+    }
+  }
+
+  private <T> void awaitEvent(final String operation, final T payload) throws InterruptedException {
+    try (final PhaseProfiler.Phase ignored = this.profiler.phase("wait " + operation)) {
+      Assert.assertTrue(this.eventRecorder.wait(operation, payload));
     }
   }
 
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+
+/**
+ * Runs named startup steps on a bounded pool, each step starting as soon as all of the steps it
+ * depends on have finished. The first failing step aborts the whole run.
+ */
+class StartupScheduler {
+
+  @FunctionalInterface
+  interface Step {
+    void run() throws Exception;
+  }
+
+  private static class Node {
+    private final String name;
+    private final Step step;
+    private final List<String> dependencies;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    private Node(final String name, final Step step, final List<String> dependencies) {
+      this.name = name;
+      this.step = step;
+      this.dependencies = dependencies;
+    }
+  }
+
+  private final Logger logger;
+  private final int parallelism;
+  private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+  StartupScheduler(final Logger logger, final int parallelism) {
+    super();
+    this.logger = logger;
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  StartupScheduler add(final String name, final Step step, final String... dependencies) {
+    if (this.nodes.containsKey(name)) {
+      throw new IllegalArgumentException("Startup step '" + name + "' declared twice.");
+    }
+    for (final String dependency : dependencies) {
+      if (!this.nodes.containsKey(dependency)) {
+        throw new IllegalArgumentException("Startup step '" + name + "' depends on undeclared step '" + dependency + "'.");
+      }
+    }
+    this.nodes.put(name, new Node(name, step, Collections.unmodifiableList(Arrays.asList(dependencies))));
+    return this;
+  }
+
+  void run(final long timeout, final TimeUnit unit) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(this.parallelism, new StartupThreadFactory());
+    final long began = System.nanoTime();
+    final Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+    try {
+      // declaration order is a topological order, dependencies are checked in add()
+      for (final Node node : this.nodes.values()) {
+        final CompletableFuture<?>[] dependencies = node.dependencies.stream()
+            .map(futures::get)
+            .toArray(CompletableFuture[]::new);
+        futures.put(node.name, CompletableFuture.allOf(dependencies).thenRunAsync(() -> this.execute(node), executor));
+      }
+
+      final CompletableFuture<Void> all = CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]));
+      final CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+      futures.values().forEach(future -> future.whenComplete((ignored, throwable) -> {
+        if (throwable != null) {
+          firstFailure.completeExceptionally(throwable);
+        }
+      }));
+      all.whenComplete((ignored, throwable) -> firstFailure.complete(null));
+
+      try {
+        firstFailure.get(timeout, unit);
+      } catch (final ExecutionException ex) {
+        throw unwrap(ex.getCause());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    this.report(began);
+  }
+
+  private void execute(final Node node) {
+    node.startedAt = System.nanoTime();
+    try {
+      node.step.run();
+    } catch (final Exception ex) {
+      throw new CompletionException(new IllegalStateException("Startup step '" + node.name + "' failed.", ex));
+    } finally {
+      node.finishedAt = System.nanoTime();
+    }
+    this.logger.info("Startup step '{}' finished in {} ms.", node.name, TimeUnit.NANOSECONDS.toMillis(node.finishedAt - node.startedAt));
+  }
+
+  private void report(final long began) {
+    final Map<String, Long> completion = new LinkedHashMap<>();
+    final Map<String, String> predecessor = new LinkedHashMap<>();
+    String last = null;
+    for (final Node node : this.nodes.values()) {
+      long ready = 0L;
+      for (final String dependency : node.dependencies) {
+        if (completion.get(dependency) >= ready) {
+          ready = completion.get(dependency);
+          predecessor.put(node.name, dependency);
+        }
+      }
+      completion.put(node.name, node.finishedAt - began);
+      if (last == null || completion.get(node.name) > completion.get(last)) {
+        last = node.name;
+      }
+    }
+
+    final List<String> criticalPath = new ArrayList<>();
+    for (String current = last; current != null; current = predecessor.get(current)) {
+      criticalPath.add(0, current);
+    }
+    this.logger.info("Startup finished in {} ms, critical path: {}.",
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began), String.join(" -> ", criticalPath));
+  }
+
+  private static Exception unwrap(final Throwable throwable) {
+    Throwable cause = throwable;
+    while (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    return cause instanceof Exception ? (Exception) cause : new IllegalStateException(cause);
+  }
+
+  private static class StartupThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      final Thread thread = new Thread(runnable, "service-startup-" + this.count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -18,6 +18,8 @@
  */
 package org.apache.fineract.cn.dev;
 
+import java.util.Locale;
+import java.util.stream.IntStream;
 import org.apache.fineract.cn.cassandra.util.CassandraConnectorConstants;
 import org.apache.fineract.cn.postgresql.util.PostgreSQLConstants;
 import org.apache.fineract.cn.test.env.TestEnvironment;
@@ -32,6 +34,21 @@ class TenantBuilder {
     super();
   }
 
+  /**
+   * Lazily generates {@code count} tenants named {@code prefix} plus a zero padded number, each with
+   * its own database and keyspace. A tenant is only built when the iterator reaches it.
+   */
+  static Iterable<Tenant> fleet(final TestEnvironment testEnvironment, final String prefix, final int count) {
+    final String format = "%s%0" + Integer.toString(Math.max(count - 1, 1)).length() + "d";
+    final String databasePrefix = prefix.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "_");
+    return () -> IntStream.range(0, count)
+        .mapToObj(i -> create(testEnvironment,
+            String.format(Locale.ROOT, format, prefix, i),
+            String.format(Locale.ROOT, format, prefix, i),
+            String.format(Locale.ROOT, format, databasePrefix, i)))
+        .iterator();
+  }
+
   static Tenant create(final TestEnvironment testEnvironment, final String identifier, final String name, final String databaseName) {
     final Tenant tenant = new Tenant();
     tenant.setIdentifier(identifier);
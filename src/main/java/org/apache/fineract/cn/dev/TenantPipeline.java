@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.fineract.cn.provisioner.api.v1.domain.Tenant;
+import org.slf4j.Logger;
+
+/**
+ * Runs one step for many tenants on a bounded pool. Tenants are pulled from the iterable only when
+ * a worker is free, so the tenants do not need to be materialized up front. Thread bound contexts
+ * such as AutoSeshat, AutoTenantContext and AutoUserContext have to be opened inside the step.
+ */
+class TenantPipeline {
+
+  @FunctionalInterface
+  interface TenantStep {
+    void run(Tenant tenant) throws Exception;
+  }
+
+  private static class TenantTiming {
+    private final String tenant;
+    private final long millis;
+
+    private TenantTiming(final String tenant, final long millis) {
+      this.tenant = tenant;
+      this.millis = millis;
+    }
+  }
+
+  private static final int SLOWEST_REPORTED = 5;
+
+  private final Logger logger;
+  private final String phase;
+  private final int parallelism;
+
+  TenantPipeline(final Logger logger, final String phase, final int parallelism) {
+    super();
+    this.logger = logger;
+    this.phase = phase;
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  void run(final Iterable<Tenant> tenants, final TenantStep step) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(this.parallelism);
+    final Semaphore inFlight = new Semaphore(this.parallelism);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final AtomicInteger completed = new AtomicInteger();
+    final ConcurrentLinkedQueue<TenantTiming> timings = new ConcurrentLinkedQueue<>();
+    final long began = System.nanoTime();
+
+    try {
+      for (final Tenant tenant : tenants) {
+        inFlight.acquire();
+        if (failure.get() != null) {
+          inFlight.release();
+          break;
+        }
+        executor.execute(() -> {
+          final long startedAt = System.nanoTime();
+          try {
+            step.run(tenant);
+            final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            timings.add(new TenantTiming(tenant.getIdentifier(), millis));
+            this.logger.info("{} tenant '{}' done in {} ms ({} completed).",
+                this.phase, tenant.getIdentifier(), millis, completed.incrementAndGet());
+          } catch (final Exception | AssertionError ex) {
+            // provisioning steps fail with assertions of the test framework as well
+            this.logger.error("{} tenant '{}' failed.", this.phase, tenant.getIdentifier(), ex);
+            failure.compareAndSet(null, ex);
+          } finally {
+            inFlight.release();
+          }
+        });
+      }
+      inFlight.acquire(this.parallelism);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    this.report(timings, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began));
+    final Throwable failed = failure.get();
+    if (failed instanceof AssertionError) {
+      throw (AssertionError) failed;
+    } else if (failed != null) {
+      throw (Exception) failed;
+    }
+  }
+
+  private void report(final ConcurrentLinkedQueue<TenantTiming> timings, final long totalMillis) {
+    if (timings.isEmpty()) {
+      return;
+    }
+    final List<TenantTiming> sorted = new ArrayList<>(timings);
+    sorted.sort(Comparator.comparingLong((TenantTiming timing) -> timing.millis).reversed());
+    final long sum = sorted.stream().mapToLong(timing -> timing.millis).sum();
+
+    final StringBuilder slowest = new StringBuilder();
+    sorted.stream().limit(SLOWEST_REPORTED).forEach(timing ->
+        slowest.append(slowest.length() == 0 ? "" : ", ").append(timing.tenant).append('=').append(timing.millis).append("ms"));
+
+    this.logger.info("{} {} tenants in {} ms with parallelism {}: min {} ms, avg {} ms, max {} ms, slowest [{}].",
+        this.phase, sorted.size(), totalMillis, this.parallelism,
+        sorted.get(sorted.size() - 1).millis, sum / sorted.size(), sorted.get(0).millis, slowest);
+  }
+}
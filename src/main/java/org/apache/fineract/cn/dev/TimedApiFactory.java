@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import org.apache.fineract.cn.api.util.ApiFactory;
+import org.slf4j.Logger;
+
+/**
+ * Creates the API clients of the micro-services wrapped in a proxy, which records the latency of
+ * every call per client and method, and whether it failed.
+ */
+class TimedApiFactory extends ApiFactory {
+
+  private final LatencyStats stats;
+
+  TimedApiFactory(final Logger logger, final LatencyStats stats) {
+    super(logger);
+    this.stats = stats;
+  }
+
+  @Override
+  public <T> T create(final Class<T> clazz, final String target) {
+    final T api = super.create(clazz, target);
+    final Object proxy = Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, (ignored, method, args) -> {
+      if (method.getDeclaringClass() == Object.class) {
+        return method.invoke(api, args);
+      }
+      final long startedAt = System.nanoTime();
+      boolean failed = true;
+      try {
+        final Object result = method.invoke(api, args);
+        failed = false;
+        return result;
+      } catch (final InvocationTargetException ex) {
+        throw ex.getCause();
+      } finally {
+        this.stats.record(clazz.getSimpleName() + "." + method.getName(), System.nanoTime() - startedAt, failed);
+      }
+    });
+    return clazz.cast(proxy);
+  }
+}
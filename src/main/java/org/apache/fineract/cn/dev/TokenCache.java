@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Access tokens per tenant and user, reused until shortly before they expire. Concurrent callers
+ * for the same key wait for one login instead of logging in each. The map only installs a pending
+ * future under its lock, the login itself runs outside of it; a failed login is not cached.
+ */
+class TokenCache {
+
+  static class Token {
+    private final String accessToken;
+    private final long expiresAtMillis;
+
+    private Token(final String accessToken, final long expiresAtMillis) {
+      this.accessToken = accessToken;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+
+    /**
+     * @param expiration ISO local date time in UTC as returned by identity and the provisioner, if
+     *                   it cannot be read the token is kept for the default lifetime
+     */
+    static Token of(final String accessToken, final String expiration) {
+      if (expiration != null) {
+        try {
+          return new Token(accessToken, LocalDateTime.parse(expiration).toInstant(ZoneOffset.UTC).toEpochMilli());
+        } catch (final DateTimeParseException ex) {
+          // kept for the default lifetime
+        }
+      }
+      return new Token(accessToken, System.currentTimeMillis() + DEFAULT_LIFETIME_MILLIS);
+    }
+  }
+
+  @FunctionalInterface
+  interface Login {
+    Token login();
+  }
+
+  private static class Key {
+    private final String tenant;
+    private final String user;
+
+    private Key(final String tenant, final String user) {
+      this.tenant = tenant;
+      this.user = user;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final Key key = (Key) o;
+      return Objects.equals(this.tenant, key.tenant) && Objects.equals(this.user, key.user);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.tenant, this.user);
+    }
+  }
+
+  private static final long DEFAULT_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(4);
+  private static final long REFRESH_MARGIN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  private final ConcurrentMap<Key, CompletableFuture<Token>> tokens = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder logins = new LongAdder();
+
+  TokenCache() {
+    super();
+  }
+
+  /**
+   * @return the cached access token of the user, or the token of a new login if there is none or
+   * it expires within the refresh margin
+   */
+  String accessToken(final String tenant, final String user, final Login login) {
+    final Key key = new Key(tenant, user);
+    final CompletableFuture<Token> pending = new CompletableFuture<>();
+    final CompletableFuture<Token> token = this.tokens.compute(key, (ignored, cached) -> isUsable(cached) ? cached : pending);
+    if (token != pending) {
+      this.hits.increment();
+      try {
+        return token.join().accessToken;
+      } catch (final CompletionException ex) {
+        // the login of the caller which installed the future failed
+        if (ex.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) ex.getCause();
+        }
+        throw ex;
+      }
+    }
+
+    this.logins.increment();
+    try {
+      final Token loggedIn = login.login();
+      pending.complete(loggedIn);
+      return loggedIn.accessToken;
+    } catch (final Throwable ex) {
+      this.tokens.remove(key, pending);
+      pending.completeExceptionally(ex);
+      throw ex;
+    }
+  }
+
+  /**
+   * @return true for a login in progress, or a token which does not expire within the refresh margin
+   */
+  private static boolean isUsable(final CompletableFuture<Token> cached) {
+    if (cached == null || cached.isCompletedExceptionally()) {
+      return false;
+    }
+    return !cached.isDone() || cached.join().expiresAtMillis - System.currentTimeMillis() > REFRESH_MARGIN_MILLIS;
+  }
+
+  /**
+   * Forgets the token of the user, e.g. because the permissions granted with it changed.
+   */
+  void invalidate(final String tenant, final String user) {
+    this.tokens.remove(new Key(tenant, user));
+  }
+
+  long hits() {
+    return this.hits.sum();
+  }
+
+  long logins() {
+    return this.logins.sum();
+  }
+}
@@ -19,10 +19,10 @@
 package org.apache.fineract.cn.dev.listener;
 
 import org.apache.fineract.cn.accounting.api.v1.EventConstants;
-import org.apache.fineract.cn.test.listener.EventRecorder;
 import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.support.JmsHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
@@ -33,39 +33,42 @@ import org.springframework.stereotype.Component;
 @Component
 public class AccountingListener {
 
-  private final EventRecorder eventRecorder;
+  private final IndexedEventRecorder eventRecorder;
+  private final EventBatcher events;
 
   @Autowired
-  public AccountingListener(final EventRecorder eventRecorder) {
+  public AccountingListener(final IndexedEventRecorder eventRecorder,
+                            final EventDispatcher eventDispatcher) {
     this.eventRecorder = eventRecorder;
+    this.events = eventDispatcher.destination(EventConstants.DESTINATION, EventConstants.SELECTOR_NAME, new EventRoutes()
+        .route(EventConstants.INITIALIZE, this::onInitialization)
+        .route(EventConstants.POST_LEDGER, this::onPostLedger)
+        .route(EventConstants.POST_ACCOUNT, this::onCreateAccount));
   }
 
   @JmsListener(
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_INITIALIZE,
-          subscription = EventConstants.DESTINATION
+          subscription = EventConstants.DESTINATION,
+          destination = EventConstants.DESTINATION
   )
-  public void onInitialization(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+  public void onEvent(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+                      @Header(value = EventConstants.SELECTOR_NAME, required = false) final String operation,
+                      @Header(value = JmsHeaders.TIMESTAMP, required = false) final Long timestamp,
+                      @Header(value = EventReplay.REPLAY_HEADER, required = false) final String replay,
+                      final String payload) throws Exception {
+    this.events.submit(tenant, operation, payload, timestamp, replay != null);
+  }
+
+  public void onInitialization(final String tenant,
                                final String payload) {
     this.eventRecorder.event(tenant, EventConstants.INITIALIZE, payload, String.class);
   }
 
-  @JmsListener(
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_POST_LEDGER,
-          subscription = EventConstants.DESTINATION
-  )
-  public void onPostLedger(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+  public void onPostLedger(final String tenant,
                            final String payload) {
     this.eventRecorder.event(tenant, EventConstants.POST_LEDGER, payload, String.class);
   }
 
-  @JmsListener(
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_POST_ACCOUNT,
-          subscription = EventConstants.DESTINATION
-  )
-  public void onCreateAccount(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+  public void onCreateAccount(final String tenant,
                               final String payload) {
     this.eventRecorder.event(tenant, EventConstants.POST_ACCOUNT, payload, String.class);
   }
@@ -18,11 +18,11 @@
  */
 package org.apache.fineract.cn.dev.listener;
 
-import org.apache.fineract.cn.test.listener.EventRecorder;
 import org.apache.fineract.cn.customer.api.v1.CustomerEventConstants;
 import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.support.JmsHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
@@ -30,20 +30,37 @@ import org.springframework.stereotype.Component;
 @Component
 public class CustomerListener {
 
-  private final EventRecorder eventRecorder;
+  private final IndexedEventRecorder eventRecorder;
+  private final EventBatcher events;
 
   @Autowired
-  public CustomerListener(final EventRecorder eventRecorder) {
+  public CustomerListener(final IndexedEventRecorder eventRecorder,
+                          final EventDispatcher eventDispatcher) {
     this.eventRecorder = eventRecorder;
+    this.events = eventDispatcher.destination(CustomerEventConstants.DESTINATION, CustomerEventConstants.SELECTOR_NAME, new EventRoutes()
+        .route(CustomerEventConstants.INITIALIZE, this::onInitialized)
+        .route(CustomerEventConstants.POST_CUSTOMER, this::onCreateCustomer));
   }
 
   @JmsListener(
       subscription = CustomerEventConstants.DESTINATION,
-      destination = CustomerEventConstants.DESTINATION,
-      selector = CustomerEventConstants.SELECTOR_INITIALIZE
+      destination = CustomerEventConstants.DESTINATION
   )
-  public void onInitialized(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+  public void onEvent(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+                      @Header(value = CustomerEventConstants.SELECTOR_NAME, required = false) final String operation,
+                      @Header(value = JmsHeaders.TIMESTAMP, required = false) final Long timestamp,
+                      @Header(value = EventReplay.REPLAY_HEADER, required = false) final String replay,
+                      final String payload) throws Exception {
+    this.events.submit(tenant, operation, payload, timestamp, replay != null);
+  }
+
+  public void onInitialized(final String tenant,
                             final String payload) {
     this.eventRecorder.event(tenant, CustomerEventConstants.INITIALIZE, payload, String.class);
   }
+
+  public void onCreateCustomer(final String tenant,
+                               final String payload) {
+    this.eventRecorder.event(tenant, CustomerEventConstants.POST_CUSTOMER, payload, String.class);
+  }
 }
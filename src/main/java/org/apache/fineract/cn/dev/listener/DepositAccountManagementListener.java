@@ -18,11 +18,11 @@
  */
 package org.apache.fineract.cn.dev.listener;
 
-import org.apache.fineract.cn.test.listener.EventRecorder;
 import org.apache.fineract.cn.deposit.api.v1.EventConstants;
 import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.support.JmsHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
@@ -30,20 +30,40 @@ import org.springframework.stereotype.Component;
 @Component
 public class DepositAccountManagementListener {
 
-  private final EventRecorder eventRecorder;
+  private final IndexedEventRecorder eventRecorder;
+  private final EventBatcher events;
 
   @Autowired
-  public DepositAccountManagementListener(final EventRecorder eventRecorder) {
+  public DepositAccountManagementListener(final IndexedEventRecorder eventRecorder,
+                                          final EventDispatcher eventDispatcher) {
     this.eventRecorder = eventRecorder;
+    this.events = eventDispatcher.destination(EventConstants.DESTINATION, EventConstants.SELECTOR_NAME, new EventRoutes()
+        .route(EventConstants.INITIALIZE, this::onInitialized)
+        .route(EventConstants.POST_PRODUCT_INSTANCE, this::onCreateProductInstance));
   }
 
   @JmsListener(
       subscription = EventConstants.DESTINATION,
-      destination = EventConstants.DESTINATION,
-      selector = EventConstants.SELECTOR_INITIALIZE
+      destination = EventConstants.DESTINATION
   )
-  public void onInitialized(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+  public void onEvent(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+                      @Header(value = EventConstants.SELECTOR_NAME, required = false) final String operation,
+                      @Header(value = JmsHeaders.TIMESTAMP, required = false) final Long timestamp,
+                      @Header(value = EventReplay.REPLAY_HEADER, required = false) final String replay,
+                      final String payload) throws Exception {
+    this.events.submit(tenant, operation, payload, timestamp, replay != null);
+  }
+
+  public void onInitialized(final String tenant,
                             final String payload) {
     this.eventRecorder.event(tenant, EventConstants.INITIALIZE, payload, String.class);
   }
+
+  /**
+   * The payload is the identifier of the customer the instance was opened for.
+   */
+  public void onCreateProductInstance(final String tenant,
+                                      final String payload) {
+    this.eventRecorder.event(tenant, EventConstants.POST_PRODUCT_INSTANCE, payload, String.class);
+  }
 }
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev.listener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands the messages of one destination to its routes. With a batch size or concurrency above one,
+ * the JMS consumer only enqueues the message and returns, so it is acknowledged once queued, and
+ * worker threads drain up to batch size messages, or whatever arrived within the batch wait, and
+ * record them in one pass through {@link IndexedEventRecorder#recordBatch}. The queue holds two
+ * batches per worker; once it is full the consumer blocks, so the broker stops delivering until the
+ * workers caught up, and no more than the queue capacity is acknowledged but not yet recorded.
+ * Otherwise messages are dispatched on the consumer thread.
+ */
+class EventBatcher {
+
+  private static class Event {
+    private final String tenant;
+    private final String operation;
+    private final String payload;
+    private final long publishedAt;
+    private final boolean replayed;
+
+    private Event(final String tenant, final String operation, final String payload, final long publishedAt,
+                  final boolean replayed) {
+      this.tenant = tenant;
+      this.operation = operation;
+      this.payload = payload;
+      this.publishedAt = publishedAt;
+      this.replayed = replayed;
+    }
+  }
+
+  private final Logger logger = LoggerFactory.getLogger(EventBatcher.class);
+  private final String destination;
+  private final EventRoutes routes;
+  private final IndexedEventRecorder eventRecorder;
+  private final EventJournal journal;
+  private final int batchSize;
+  private final long batchWaitNanos;
+  private final int concurrency;
+  private final BlockingQueue<Event> queue;
+  private final ExecutorService workers;
+  private final long createdAt = System.currentTimeMillis();
+
+  private final LongAdder received = new LongAdder();
+  private final LongAdder recorded = new LongAdder();
+  private final LongAdder unrouted = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder replayed = new LongAdder();
+  private final LongAdder replayedRecorded = new LongAdder();
+  private final LongAdder replayedLagMillis = new LongAdder();
+  private final AtomicLong replayedMaxLagMillis = new AtomicLong();
+  private final LongAdder totalLagMillis = new LongAdder();
+  private final AtomicLong maxLagMillis = new AtomicLong();
+
+  /**
+   * @param journal to append every received message to, null if there is none
+   */
+  EventBatcher(final String destination, final EventRoutes routes, final IndexedEventRecorder eventRecorder,
+               final EventJournal journal, final int batchSize, final long batchWaitMillis, final int concurrency) {
+    super();
+    this.destination = destination;
+    this.routes = routes;
+    this.eventRecorder = eventRecorder;
+    this.journal = journal;
+    this.batchSize = Math.max(1, batchSize);
+    this.batchWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, batchWaitMillis));
+    this.concurrency = Math.max(1, concurrency);
+    if (this.batchSize == 1 && this.concurrency == 1) {
+      this.queue = null;
+      this.workers = null;
+    } else {
+      this.queue = new ArrayBlockingQueue<>(2 * this.batchSize * this.concurrency);
+      final AtomicInteger threadCount = new AtomicInteger();
+      this.workers = Executors.newFixedThreadPool(this.concurrency, runnable -> {
+        final Thread thread = new Thread(runnable, "events-" + destination + "-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      for (int i = 0; i < this.concurrency; i++) {
+        this.workers.execute(this::drain);
+      }
+    }
+  }
+
+  /**
+   * @param publishedAt the JMS timestamp of the message, null if the broker did not set one
+   * @param replayed    true if the message was published by {@link EventReplay}, it is not journaled again then
+   */
+  void submit(final String tenant, final String operation, final String payload, final Long publishedAt,
+              final boolean replayed) throws Exception {
+    this.received.increment();
+    final Event event = new Event(tenant, operation, payload,
+        publishedAt != null && publishedAt > 0L ? publishedAt : System.currentTimeMillis(), replayed);
+    if (this.journal != null && !replayed) {
+      this.journal.append(this.destination, tenant, operation, payload, event.publishedAt);
+    }
+    if (this.queue == null) {
+      this.dispatch(event);
+      this.batches.increment();
+    } else {
+      this.queue.put(event);
+    }
+  }
+
+  EventDispatcher.DestinationStats stats() {
+    final long recordedCount = this.recorded.sum();
+    final long uptimeMillis = Math.max(1L, System.currentTimeMillis() - this.createdAt);
+    return new EventDispatcher.DestinationStats(
+        this.destination,
+        this.batchSize,
+        this.concurrency,
+        this.received.sum(),
+        recordedCount,
+        this.unrouted.sum(),
+        this.failed.sum(),
+        this.batches.sum(),
+        this.replayed.sum(),
+        this.replayedRecorded.sum(),
+        this.replayedLagMillis.sum(),
+        this.replayedMaxLagMillis.get(),
+        this.queue != null ? this.queue.size() : 0,
+        this.totalLagMillis.sum(),
+        this.maxLagMillis.get(),
+        recordedCount * 1000.0D / uptimeMillis);
+  }
+
+  void beginReplay() {
+    this.replayedMaxLagMillis.set(0L);
+  }
+
+  void shutdown() {
+    if (this.workers != null) {
+      this.workers.shutdownNow();
+    }
+  }
+
+  private void drain() {
+    final List<Event> batch = new ArrayList<>(this.batchSize);
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        batch.add(this.queue.take());
+        final long deadline = System.nanoTime() + this.batchWaitNanos;
+        while (batch.size() < this.batchSize) {
+          if (this.queue.drainTo(batch, this.batchSize - batch.size()) > 0) {
+            continue;
+          }
+          final Event next = this.queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+        this.eventRecorder.recordBatch(() -> {
+          for (final Event event : batch) {
+            try {
+              this.dispatch(event);
+            } catch (final Exception ex) {
+              this.logger.error("Could not record event '{}' of destination '{}'.", event.operation, this.destination, ex);
+            }
+          }
+        });
+        this.batches.increment();
+      } catch (final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      } catch (final RuntimeException ex) {
+        // the worker has to keep draining, or the full queue would block the consumer for good
+        this.logger.error("Could not record a batch of {} events of destination '{}'.", batch.size(), this.destination, ex);
+        this.failed.add(batch.size());
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void dispatch(final Event event) throws Exception {
+    final boolean routed;
+    try {
+      routed = this.routes.dispatch(event.tenant, event.operation, event.payload);
+    } catch (final Exception ex) {
+      this.failed.increment();
+      throw ex;
+    } finally {
+      if (event.replayed) {
+        this.replayed.increment();
+      }
+    }
+    if (!routed) {
+      this.unrouted.increment();
+      return;
+    }
+    final long lagMillis = Math.max(0L, System.currentTimeMillis() - event.publishedAt);
+    this.recorded.increment();
+    this.totalLagMillis.add(lagMillis);
+    this.maxLagMillis.accumulateAndGet(lagMillis, Math::max);
+    if (event.replayed) {
+      this.replayedRecorded.increment();
+      this.replayedLagMillis.add(lagMillis);
+      this.replayedMaxLagMillis.accumulateAndGet(lagMillis, Math::max);
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev.listener;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the {@link EventBatcher} of each destination from the demoserver.event.* settings, and
+ * collects their throughput and lag. If demoserver.event.journal is set, every received message is
+ * also appended to the {@link EventJournal} in that directory.
+ */
+@Component
+public class EventDispatcher {
+
+  public static class DestinationStats {
+    private final String destination;
+    private final int batchSize;
+    private final int concurrency;
+    private final long received;
+    private final long recorded;
+    private final long unrouted;
+    private final long failed;
+    private final long batches;
+    private final long replayed;
+    private final long replayedRecorded;
+    private final long replayedLagMillis;
+    private final long replayedMaxLagMillis;
+    private final int queued;
+    private final long totalLagMillis;
+    private final long maxLagMillis;
+    private final double eventsPerSecond;
+
+    DestinationStats(final String destination, final int batchSize, final int concurrency, final long received,
+                     final long recorded, final long unrouted, final long failed, final long batches, final long replayed,
+                     final long replayedRecorded, final long replayedLagMillis, final long replayedMaxLagMillis,
+                     final int queued,
+                     final long totalLagMillis, final long maxLagMillis, final double eventsPerSecond) {
+      super();
+      this.destination = destination;
+      this.batchSize = batchSize;
+      this.concurrency = concurrency;
+      this.received = received;
+      this.recorded = recorded;
+      this.unrouted = unrouted;
+      this.failed = failed;
+      this.batches = batches;
+      this.replayed = replayed;
+      this.replayedRecorded = replayedRecorded;
+      this.replayedLagMillis = replayedLagMillis;
+      this.replayedMaxLagMillis = replayedMaxLagMillis;
+      this.queued = queued;
+      this.totalLagMillis = totalLagMillis;
+      this.maxLagMillis = maxLagMillis;
+      this.eventsPerSecond = eventsPerSecond;
+    }
+
+    public String getDestination() {
+      return destination;
+    }
+
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    public int getConcurrency() {
+      return concurrency;
+    }
+
+    public long getReceived() {
+      return received;
+    }
+
+    public long getRecorded() {
+      return recorded;
+    }
+
+    public long getUnrouted() {
+      return unrouted;
+    }
+
+    public long getFailed() {
+      return failed;
+    }
+
+    public long getBatches() {
+      return batches;
+    }
+
+    /**
+     * @return replayed events which have been handled, whether recorded, unrouted or failed
+     */
+    public long getReplayed() {
+      return replayed;
+    }
+
+    public long getReplayedRecorded() {
+      return replayedRecorded;
+    }
+
+    public long getReplayedLagMillis() {
+      return replayedLagMillis;
+    }
+
+    /**
+     * @return maximum lag of a replayed event since the last replay began
+     */
+    public long getReplayedMaxLagMillis() {
+      return replayedMaxLagMillis;
+    }
+
+    public int getQueued() {
+      return queued;
+    }
+
+    public long getTotalLagMillis() {
+      return totalLagMillis;
+    }
+
+    public long getAverageLagMillis() {
+      return recorded > 0L ? totalLagMillis / recorded : 0L;
+    }
+
+    public long getMaxLagMillis() {
+      return maxLagMillis;
+    }
+
+    public double getEventsPerSecond() {
+      return eventsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT,
+          "%s: received=%d, recorded=%d, unrouted=%d, failed=%d, queued=%d, batches=%d, lag avg=%d ms max=%d ms, %.1f events/s (batch size %d, concurrency %d)",
+          destination, received, recorded, unrouted, failed, queued, batches, getAverageLagMillis(), maxLagMillis,
+          eventsPerSecond, batchSize, concurrency);
+    }
+  }
+
+  private final Environment environment;
+  private final IndexedEventRecorder eventRecorder;
+  private final EventJournal journal;
+  private final ConcurrentMap<String, EventBatcher> batchers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, String> operationHeaders = new ConcurrentHashMap<>();
+
+  @Autowired
+  public EventDispatcher(final Environment environment, final IndexedEventRecorder eventRecorder) throws IOException {
+    super();
+    this.environment = environment;
+    this.eventRecorder = eventRecorder;
+    if (environment.containsProperty("demoserver.event.journal")) {
+      final Path directory = Paths.get(environment.getProperty("demoserver.event.journal"));
+      final int segmentMegabytes = environment.getProperty("demoserver.event.journal.segmentSize", Integer.class, 64);
+      this.journal = EventJournal.open(directory, segmentMegabytes * 1024 * 1024);
+    } else {
+      this.journal = null;
+    }
+  }
+
+  /**
+   * Settings of a destination can be overridden by appending its name to the property, e.g.
+   * demoserver.event.concurrency.portfolio-v1.
+   *
+   * @param operationHeader name of the message property the service puts the operation into
+   */
+  EventBatcher destination(final String destination, final String operationHeader, final EventRoutes routes) {
+    this.operationHeaders.put(destination, operationHeader);
+    return this.batchers.computeIfAbsent(destination, name -> new EventBatcher(
+        name,
+        routes,
+        this.eventRecorder,
+        this.journal,
+        this.setting("demoserver.event.batchSize", name, 1),
+        this.setting("demoserver.event.batchWait", name, 10),
+        this.setting("demoserver.event.concurrency", name, 1)));
+  }
+
+  /**
+   * @return name of the operation header of the destination, null if no listener consumes it
+   */
+  String operationHeader(final String destination) {
+    return this.operationHeaders.get(destination);
+  }
+
+  /**
+   * Resets the maximum lag of replayed events, so a replay reports its own.
+   */
+  void beginReplay() {
+    this.batchers.values().forEach(EventBatcher::beginReplay);
+  }
+
+  public List<DestinationStats> stats() {
+    final List<DestinationStats> stats = new ArrayList<>();
+    this.batchers.values().forEach(batcher -> stats.add(batcher.stats()));
+    stats.sort((left, right) -> left.getDestination().compareTo(right.getDestination()));
+    return stats;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    this.batchers.values().forEach(EventBatcher::shutdown);
+    if (this.journal != null) {
+      this.journal.close();
+    }
+  }
+
+  private int setting(final String property, final String destination, final int defaultValue) {
+    final Integer global = this.environment.getProperty(property, Integer.class, defaultValue);
+    return this.environment.getProperty(property + "." + destination, Integer.class, global);
+  }
+}
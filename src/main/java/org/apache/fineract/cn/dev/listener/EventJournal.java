@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev.listener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Append-only journal of the received events in memory-mapped segment files, so they neither
+ * occupy the heap nor disappear at shutdown. Every segment has an index file with the time and
+ * offset of the first record after each {@value #INDEX_INTERVAL} bytes, which lets a scan by time
+ * skip to the right place. Records are ordered by the time they were journaled.
+ *
+ * <p>Segment layout: magic, version, then records of length, recorded at, published at,
+ * destination, tenant, operation and payload. A record length of 0 marks the end of the written part.
+ */
+public class EventJournal implements Closeable {
+
+  private static final int MAGIC = 0x4A524E4C;
+  private static final int VERSION = 2;
+  private static final int HEADER_BYTES = 8;
+  private static final int INDEX_INTERVAL = 4096;
+  private static final int INDEX_ENTRY_BYTES = 12;
+  private static final String SEGMENT_SUFFIX = ".journal";
+  private static final String INDEX_SUFFIX = ".index";
+
+  public static class Record {
+    private final long recordedAt;
+    private final long publishedAt;
+    private final String destination;
+    private final String tenant;
+    private final String operation;
+    private final String payload;
+
+    Record(final long recordedAt, final long publishedAt, final String destination, final String tenant, final String operation,
+           final String payload) {
+      super();
+      this.recordedAt = recordedAt;
+      this.publishedAt = publishedAt;
+      this.destination = destination;
+      this.tenant = tenant;
+      this.operation = operation;
+      this.payload = payload;
+    }
+
+    public long getRecordedAt() {
+      return recordedAt;
+    }
+
+    public long getPublishedAt() {
+      return publishedAt;
+    }
+
+    public String getDestination() {
+      return destination;
+    }
+
+    public String getTenant() {
+      return tenant;
+    }
+
+    public String getOperation() {
+      return operation;
+    }
+
+    public String getPayload() {
+      return payload;
+    }
+  }
+
+  private final Path directory;
+  private final int segmentBytes;
+  private int segmentNumber;
+  private MappedByteBuffer segment;
+  private MappedByteBuffer index;
+  private int nextIndexedOffset;
+  private long lastRecordedAt;
+
+  private EventJournal(final Path directory, final int segmentBytes, final int firstSegmentNumber) {
+    super();
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.segmentNumber = firstSegmentNumber - 1;
+  }
+
+  /**
+   * Opens the journal in the directory. Existing segments are kept and new records go to new
+   * segments after them.
+   */
+  public static EventJournal open(final Path directory, final int segmentBytes) throws IOException {
+    Files.createDirectories(directory);
+    final List<Path> segments = segments(directory);
+    final int next = segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1)) + 1;
+    return new EventJournal(directory, Math.max(segmentBytes, 64 * 1024), next);
+  }
+
+  public synchronized void append(final String destination, final String tenant, final String operation, final String payload,
+                                  final long publishedAt) throws IOException {
+    final byte[] destinationBytes = bytes(destination);
+    final byte[] tenantBytes = bytes(tenant);
+    final byte[] operationBytes = bytes(operation);
+    final byte[] payloadBytes = bytes(payload);
+    final int length = 8 + 8 + 2 + destinationBytes.length + 2 + tenantBytes.length + 2 + operationBytes.length + 4 + payloadBytes.length;
+    // the trailing int is left zero as end marker
+    if (this.segment == null || this.segment.remaining() < 4 + length + 4) {
+      this.roll(4 + length + 4);
+    }
+    this.lastRecordedAt = Math.max(this.lastRecordedAt, System.currentTimeMillis());
+
+    final int offset = this.segment.position();
+    if (offset >= this.nextIndexedOffset && this.index.remaining() >= INDEX_ENTRY_BYTES) {
+      this.index.putLong(this.lastRecordedAt).putInt(offset);
+      this.nextIndexedOffset = offset + INDEX_INTERVAL;
+    }
+    this.segment.position(offset + 4);
+    this.segment.putLong(this.lastRecordedAt);
+    this.segment.putLong(publishedAt);
+    this.segment.putShort((short) destinationBytes.length).put(destinationBytes);
+    this.segment.putShort((short) tenantBytes.length).put(tenantBytes);
+    this.segment.putShort((short) operationBytes.length).put(operationBytes);
+    this.segment.putInt(payloadBytes.length).put(payloadBytes);
+    // the length goes last, so a concurrent reader never sees a partly written record
+    this.segment.putInt(offset, length);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (this.segment != null) {
+      this.segment.force();
+      this.index.force();
+      this.segment = null;
+      this.index = null;
+    }
+  }
+
+  /**
+   * Scans all segments of the journal in the directory in the order the records were written.
+   *
+   * @param tenant    only records of this tenant, or all if null
+   * @param operation only records of this operation, or all if null
+   * @param from      only records journaled at or after this time in milliseconds
+   * @param to        only records journaled at or before this time in milliseconds
+   */
+  public static void scan(final Path directory, final String tenant, final String operation, final long from, final long to,
+                          final Consumer<Record> consumer) throws IOException {
+    for (final Path segmentFile : segments(directory)) {
+      final ByteBuffer segment = map(segmentFile, FileChannel.MapMode.READ_ONLY, StandardOpenOption.READ);
+      if (segment.getInt(0) != MAGIC || segment.getInt(4) != VERSION) {
+        throw new IOException("'" + segmentFile + "' is not an event journal segment.");
+      }
+      segment.position(startOffset(indexFile(segmentFile), from));
+      while (segment.remaining() >= 4) {
+        final int length = segment.getInt();
+        if (length == 0) {
+          break;
+        }
+        final int next = segment.position() + length;
+        final long recordedAt = segment.getLong();
+        if (recordedAt > to) {
+          return;
+        }
+        final long publishedAt = segment.getLong();
+        final String recordDestination = string(segment, segment.getShort() & 0xFFFF);
+        final String recordTenant = string(segment, segment.getShort() & 0xFFFF);
+        final String recordOperation = string(segment, segment.getShort() & 0xFFFF);
+        if (recordedAt >= from
+            && (tenant == null || tenant.equals(recordTenant))
+            && (operation == null || operation.equals(recordOperation))) {
+          consumer.accept(new Record(recordedAt, publishedAt, recordDestination, recordTenant, recordOperation, string(segment, segment.getInt())));
+        }
+        segment.position(next);
+      }
+    }
+  }
+
+  public static List<Record> read(final Path directory, final String tenant, final String operation, final long from, final long to)
+      throws IOException {
+    final List<Record> records = new ArrayList<>();
+    scan(directory, tenant, operation, from, to, records::add);
+    return records;
+  }
+
+  private void roll(final int minimumBytes) throws IOException {
+    this.close();
+    this.segmentNumber++;
+    final Path segmentFile = this.directory.resolve(String.format("events-%010d%s", this.segmentNumber, SEGMENT_SUFFIX));
+    final int size = Math.max(this.segmentBytes, HEADER_BYTES + minimumBytes);
+    this.segment = map(segmentFile, size);
+    this.segment.putInt(MAGIC).putInt(VERSION);
+    this.index = map(indexFile(segmentFile), (size / INDEX_INTERVAL + 1) * INDEX_ENTRY_BYTES);
+    this.nextIndexedOffset = 0;
+  }
+
+  private static MappedByteBuffer map(final Path file, final int size) throws IOException {
+    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  private static MappedByteBuffer map(final Path file, final FileChannel.MapMode mode, final StandardOpenOption option)
+      throws IOException {
+    try (final FileChannel channel = FileChannel.open(file, option)) {
+      return channel.map(mode, 0, channel.size());
+    }
+  }
+
+  private static int startOffset(final Path indexFile, final long from) throws IOException {
+    if (from <= 0L || !Files.exists(indexFile)) {
+      return HEADER_BYTES;
+    }
+    final ByteBuffer index = map(indexFile, FileChannel.MapMode.READ_ONLY, StandardOpenOption.READ);
+    int low = 0;
+    int high = index.capacity() / INDEX_ENTRY_BYTES - 1;
+    int offset = HEADER_BYTES;
+    // last indexed record before the start of the range, unused entries are zero
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final long recordedAt = index.getLong(middle * INDEX_ENTRY_BYTES);
+      if (recordedAt != 0L && recordedAt < from) {
+        offset = Math.max(offset, index.getInt(middle * INDEX_ENTRY_BYTES + 8));
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return offset;
+  }
+
+  private static List<Path> segments(final Path directory) throws IOException {
+    final List<Path> segments = new ArrayList<>();
+    if (!Files.isDirectory(directory)) {
+      return segments;
+    }
+    try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "events-*" + SEGMENT_SUFFIX)) {
+      stream.forEach(segments::add);
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+
+  private static int segmentNumber(final Path segmentFile) {
+    final String name = segmentFile.getFileName().toString();
+    return Integer.parseInt(name.substring("events-".length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private static Path indexFile(final Path segmentFile) {
+    final String name = segmentFile.getFileName().toString();
+    return segmentFile.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+  }
+
+  private static byte[] bytes(final String value) {
+    return value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+  }
+
+  private static String string(final ByteBuffer buffer, final int length) {
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev.listener;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.jms.ConnectionFactory;
+import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the records of an {@link EventJournal} again to the embedded broker, keeping the gaps
+ * between them scaled by the speed, or as fast as possible. The services subscribed to the
+ * destinations consume the replayed events as well, like the original traffic.
+ */
+@Component
+public class EventReplay {
+
+  // marks replayed messages, so they are counted separately and not journaled again
+  static final String REPLAY_HEADER = "demoserverReplay";
+  private static final long DRAIN_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  public static class Report {
+    private final long published;
+    private final long publishMillis;
+    private final long recorded;
+    private final long drainMillis;
+    private final long totalLagMillis;
+    private final long maxLagMillis;
+
+    private Report(final long published, final long publishMillis, final long recorded, final long drainMillis,
+                   final long totalLagMillis, final long maxLagMillis) {
+      super();
+      this.published = published;
+      this.publishMillis = publishMillis;
+      this.recorded = recorded;
+      this.drainMillis = drainMillis;
+      this.totalLagMillis = totalLagMillis;
+      this.maxLagMillis = maxLagMillis;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT,
+          "replayed %d events in %d ms (%.1f events/s), recorded %d in %d ms (%.1f events/s), lag avg=%d ms, max so far=%d ms",
+          published, publishMillis, published * 1000.0D / Math.max(1L, publishMillis),
+          recorded, drainMillis, recorded * 1000.0D / Math.max(1L, drainMillis),
+          recorded > 0L ? totalLagMillis / recorded : 0L, maxLagMillis);
+    }
+  }
+
+  private final Logger logger = LoggerFactory.getLogger(EventReplay.class);
+  private final EventDispatcher eventDispatcher;
+  private final JmsTemplate jmsTemplate;
+
+  @Autowired
+  public EventReplay(final ConnectionFactory connectionFactory, final EventDispatcher eventDispatcher) {
+    super();
+    this.eventDispatcher = eventDispatcher;
+    this.jmsTemplate = new JmsTemplate(connectionFactory);
+    this.jmsTemplate.setPubSubDomain(true);
+  }
+
+  /**
+   * @param tenant only replay the events of this tenant, or all if null
+   * @param speed  factor applied to the original pace, 0 or less to publish as fast as possible
+   */
+  public Report replay(final Path journal, final String tenant, final double speed) throws IOException, InterruptedException {
+    // events journaled while the replay runs are not part of it
+    final long replayStartedAt = System.currentTimeMillis();
+    this.eventDispatcher.beginReplay();
+    final long[] before = this.totals();
+    final long[] published = new long[1];
+    final long[] firstRecordedAt = {-1L};
+    final long startNanos = System.nanoTime();
+
+    this.logger.info("Replaying journal '{}' at {}.", journal, speed > 0.0D ? speed + "x" : "maximum speed");
+    try {
+      EventJournal.scan(journal, tenant, null, 0L, replayStartedAt - 1L, record -> {
+        final String operationHeader = this.eventDispatcher.operationHeader(record.getDestination());
+        if (operationHeader == null) {
+          throw new IllegalStateException("No listener consumes destination '" + record.getDestination() + "' of the journal.");
+        }
+        if (firstRecordedAt[0] < 0L) {
+          firstRecordedAt[0] = record.getRecordedAt();
+        }
+        if (speed > 0.0D) {
+          final long dueNanos = startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(record.getRecordedAt() - firstRecordedAt[0]) / speed);
+          long waitNanos;
+          while ((waitNanos = dueNanos - System.nanoTime()) > 0L) {
+            LockSupport.parkNanos(waitNanos);
+            if (Thread.currentThread().isInterrupted()) {
+              throw new ReplayInterruptedException();
+            }
+          }
+        }
+        this.jmsTemplate.convertAndSend(record.getDestination(), record.getPayload(), message -> {
+          message.setStringProperty(TenantHeaderFilter.TENANT_HEADER, record.getTenant());
+          message.setStringProperty(operationHeader, record.getOperation());
+          message.setStringProperty(REPLAY_HEADER, Boolean.TRUE.toString());
+          return message;
+        });
+        published[0]++;
+      });
+    } catch (final ReplayInterruptedException ex) {
+      throw new InterruptedException("Replay of '" + journal + "' interrupted after " + published[0] + " events.");
+    }
+    final long publishMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+    // the consumers may still be catching up
+    final long drainDeadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+    long[] after = this.totals();
+    while (after[0] - before[0] < published[0] && System.currentTimeMillis() < drainDeadline) {
+      Thread.sleep(50L);
+      after = this.totals();
+    }
+    final long drainMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+    final Report report = new Report(published[0], publishMillis, after[1] - before[1], drainMillis, after[2] - before[2], after[3]);
+    this.logger.info("Replay of '{}': {}.", journal, report);
+    return report;
+  }
+
+  /**
+   * @return handled replayed events, recorded replayed events, their total lag and maximum lag over
+   * all destinations
+   */
+  private long[] totals() {
+    final long[] totals = new long[4];
+    final List<EventDispatcher.DestinationStats> stats = this.eventDispatcher.stats();
+    for (final EventDispatcher.DestinationStats destination : stats) {
+      totals[0] += destination.getReplayed();
+      totals[1] += destination.getReplayedRecorded();
+      totals[2] += destination.getReplayedLagMillis();
+      totals[3] = Math.max(totals[3], destination.getReplayedMaxLagMillis());
+    }
+    return totals;
+  }
+
+  private static class ReplayInterruptedException extends RuntimeException {
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev.listener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Routes the messages of one destination to their handler by the value of the operation header.
+ * Each listener consumes its destination once without a selector and dispatches in process, so
+ * the broker does not have to evaluate one selector per handler for every message.
+ */
+class EventRoutes {
+
+  @FunctionalInterface
+  interface Handler {
+    void handle(String tenant, String payload) throws Exception;
+  }
+
+  private final Map<String, Handler> handlers = new HashMap<>();
+
+  EventRoutes() {
+    super();
+  }
+
+  EventRoutes route(final String operation, final Handler handler) {
+    this.handlers.put(operation, handler);
+    return this;
+  }
+
+  /**
+   * @return false if there is no handler for the operation, the message is ignored then
+   */
+  boolean dispatch(final String tenant, final String operation, final String payload) throws Exception {
+    if (operation == null) {
+      return false;
+    }
+    final Handler handler = this.handlers.get(operation);
+    if (handler == null) {
+      return false;
+    }
+    handler.handle(tenant, payload);
+    return true;
+  }
+}
@@ -19,10 +19,10 @@
 package org.apache.fineract.cn.dev.listener;
 
 import org.apache.fineract.cn.group.api.v1.EventConstants;
-import org.apache.fineract.cn.test.listener.EventRecorder;
 import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.support.JmsHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
@@ -32,20 +32,37 @@ import org.springframework.stereotype.Component;
 @SuppressWarnings("unused")
 @Component
 public class GroupListener {
-  private final EventRecorder eventRecorder;
+  private final IndexedEventRecorder eventRecorder;
+  private final EventBatcher events;
 
   @Autowired
-  public GroupListener(final EventRecorder eventRecorder) {
+  public GroupListener(final IndexedEventRecorder eventRecorder,
+                       final EventDispatcher eventDispatcher) {
     this.eventRecorder = eventRecorder;
+    this.events = eventDispatcher.destination(EventConstants.DESTINATION, EventConstants.SELECTOR_NAME, new EventRoutes()
+        .route(EventConstants.INITIALIZE, this::onInitialization)
+        .route(EventConstants.POST_GROUP, this::onCreateGroup));
   }
 
   @JmsListener(
-      destination = EventConstants.DESTINATION,
-      selector = EventConstants.SELECTOR_INITIALIZE,
-      subscription = EventConstants.DESTINATION
+      subscription = EventConstants.DESTINATION,
+      destination = EventConstants.DESTINATION
   )
-  public void onInitialization(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
-      final String payload) {
+  public void onEvent(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+                      @Header(value = EventConstants.SELECTOR_NAME, required = false) final String operation,
+                      @Header(value = JmsHeaders.TIMESTAMP, required = false) final Long timestamp,
+                      @Header(value = EventReplay.REPLAY_HEADER, required = false) final String replay,
+                      final String payload) throws Exception {
+    this.events.submit(tenant, operation, payload, timestamp, replay != null);
+  }
+
+  public void onInitialization(final String tenant,
+                               final String payload) {
     this.eventRecorder.event(tenant, EventConstants.INITIALIZE, payload, String.class);
   }
+
+  public void onCreateGroup(final String tenant,
+                            final String payload) {
+    this.eventRecorder.event(tenant, EventConstants.POST_GROUP, payload, String.class);
+  }
 }
@@ -18,7 +18,6 @@
  */
 package org.apache.fineract.cn.dev.listener;
 
-import org.apache.fineract.cn.test.listener.EventRecorder;
 import org.apache.fineract.cn.identity.api.v1.events.ApplicationPermissionEvent;
 import org.apache.fineract.cn.identity.api.v1.events.ApplicationPermissionUserEvent;
 import org.apache.fineract.cn.identity.api.v1.events.ApplicationSignatureEvent;
@@ -26,6 +25,7 @@ import org.apache.fineract.cn.identity.api.v1.events.EventConstants;
 import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.support.JmsHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
@@ -36,86 +36,73 @@ import org.springframework.stereotype.Component;
 @Component
 public class IdentityListener {
 
-  private final EventRecorder eventRecorder;
+  private final IndexedEventRecorder eventRecorder;
+  private final EventBatcher events;
 
   @Autowired
-  public IdentityListener(final EventRecorder eventRecorder) {
+  public IdentityListener(final IndexedEventRecorder eventRecorder,
+                          final EventDispatcher eventDispatcher) {
     this.eventRecorder = eventRecorder;
+    this.events = eventDispatcher.destination(EventConstants.DESTINATION, EventConstants.SELECTOR_NAME, new EventRoutes()
+        .route(EventConstants.OPERATION_POST_USER, this::onCreateUser)
+        .route(EventConstants.OPERATION_PUT_USER_PASSWORD, this::onChangeUserPassword)
+        .route(EventConstants.OPERATION_POST_PERMITTABLE_GROUP, this::onCreatePermittableGroup)
+        .route(EventConstants.OPERATION_POST_APPLICATION_PERMISSION, this::onCreateApplicationPermission)
+        .route(EventConstants.OPERATION_PUT_APPLICATION_SIGNATURE, this::onSetApplicationSignature)
+        .route(EventConstants.OPERATION_PUT_APPLICATION_PERMISSION_USER_ENABLED, this::onPutApplicationPermissionEnabledForUser)
+        .route(EventConstants.OPERATION_POST_ROLE, this::onCreateRole));
   }
 
   @JmsListener(
           subscription = EventConstants.DESTINATION,
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_POST_USER
+          destination = EventConstants.DESTINATION
   )
+  public void onEvent(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+                      @Header(value = EventConstants.SELECTOR_NAME, required = false) final String operation,
+                      @Header(value = JmsHeaders.TIMESTAMP, required = false) final Long timestamp,
+                      @Header(value = EventReplay.REPLAY_HEADER, required = false) final String replay,
+                      final String payload) throws Exception {
+    this.events.submit(tenant, operation, payload, timestamp, replay != null);
+  }
+
   public void onCreateUser(
-          @Header(TenantHeaderFilter.TENANT_HEADER)final String tenant,
+          final String tenant,
           final String payload) throws Exception {
     eventRecorder.event(tenant, EventConstants.OPERATION_POST_USER, payload, String.class);
   }
 
-  @JmsListener(
-          subscription = EventConstants.DESTINATION,
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_PUT_USER_PASSWORD
-  )
   public void onChangeUserPassword(
-          @Header(TenantHeaderFilter.TENANT_HEADER)final String tenant,
+          final String tenant,
           final String payload) throws Exception {
     eventRecorder.event(tenant, EventConstants.OPERATION_PUT_USER_PASSWORD, payload, String.class);
   }
 
-  @JmsListener(
-          subscription = EventConstants.DESTINATION,
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_POST_PERMITTABLE_GROUP
-  )
   public void onCreatePermittableGroup(
-          @Header(TenantHeaderFilter.TENANT_HEADER)final String tenant,
+          final String tenant,
           final String payload) throws Exception {
     eventRecorder.event(tenant, EventConstants.OPERATION_POST_PERMITTABLE_GROUP, payload, String.class);
   }
 
-  @JmsListener(
-          subscription = EventConstants.DESTINATION,
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_POST_APPLICATION_PERMISSION
-  )
   public void onCreateApplicationPermission(
-          @Header(TenantHeaderFilter.TENANT_HEADER)final String tenant,
+          final String tenant,
           final String payload) throws Exception {
     eventRecorder.event(tenant, EventConstants.OPERATION_POST_APPLICATION_PERMISSION, payload, ApplicationPermissionEvent.class);
   }
 
-  @JmsListener(
-          subscription = EventConstants.DESTINATION,
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_PUT_APPLICATION_SIGNATURE
-  )
   public void onSetApplicationSignature(
-          @Header(TenantHeaderFilter.TENANT_HEADER)final String tenant,
+          final String tenant,
           final String payload) throws Exception {
     eventRecorder.event(tenant, EventConstants.OPERATION_PUT_APPLICATION_SIGNATURE, payload, ApplicationSignatureEvent.class);
   }
 
-  @JmsListener(
-          subscription = EventConstants.DESTINATION,
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_PUT_APPLICATION_PERMISSION_USER_ENABLED
-  )
   public void onPutApplicationPermissionEnabledForUser(
-          @Header(TenantHeaderFilter.TENANT_HEADER)final String tenant,
+          final String tenant,
           final String payload) throws Exception {
     eventRecorder.event(tenant, EventConstants.OPERATION_PUT_APPLICATION_PERMISSION_USER_ENABLED, payload, ApplicationPermissionUserEvent.class);
   }
 
-  @JmsListener(
-          subscription = EventConstants.DESTINATION,
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_POST_ROLE
-  )
   public void onCreateRole(
-          @Header(TenantHeaderFilter.TENANT_HEADER)final String tenant,
+          final String tenant,
           final String payload) throws Exception {
     eventRecorder.event(tenant, EventConstants.OPERATION_POST_ROLE, payload, String.class);
   }
@@ -0,0 +1,564 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev.listener;
+
+import com.google.gson.Gson;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.annotation.PreDestroy;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the events received by the listeners, indexed by tenant, operation and deserialized
+ * payload. Waiting for an event is a single hash lookup, and waiters are woken by the matching
+ * insert instead of polling. All structures are concurrent maps and queues, so the JMS consumer
+ * threads do not contend on a shared lock.
+ *
+ * <p>Waits are scoped to the tenant of the calling thread if one is set, and match events of any
+ * tenant otherwise.
+ *
+ * <p>The history is a ring in arrival order, bounded by a global and a per-tenant number of events
+ * and by their age. Inserting evicts the oldest events beyond the bounds, together with their index
+ * entries, so a long-running server does not grow its heap with the traffic it has seen. Every
+ * tenant keeps its own queue in arrival order, so its oldest event is found without scanning the
+ * history, and expired events are also evicted periodically while no events arrive.
+ */
+@Component
+public class IndexedEventRecorder {
+
+  private static final String ANY_TENANT = "";
+  // rough retained size of a recorded event and its two index entries, without the payload
+  private static final long EVENT_OVERHEAD_BYTES = 256L;
+
+  public static class Stats {
+    private final int events;
+    private final int tenants;
+    private final int indexEntries;
+    private final long pendingWaits;
+    private final long evicted;
+    private final long approximateBytes;
+    private final long waits;
+    private final long waitNanos;
+    private final long waitTimeouts;
+
+    Stats(final int events, final int tenants, final int indexEntries, final long pendingWaits, final long evicted,
+          final long approximateBytes, final long waits, final long waitNanos, final long waitTimeouts) {
+      super();
+      this.events = events;
+      this.tenants = tenants;
+      this.indexEntries = indexEntries;
+      this.pendingWaits = pendingWaits;
+      this.evicted = evicted;
+      this.approximateBytes = approximateBytes;
+      this.waits = waits;
+      this.waitNanos = waitNanos;
+      this.waitTimeouts = waitTimeouts;
+    }
+
+    public int getEvents() {
+      return events;
+    }
+
+    public int getTenants() {
+      return tenants;
+    }
+
+    public int getIndexEntries() {
+      return indexEntries;
+    }
+
+    public long getPendingWaits() {
+      return pendingWaits;
+    }
+
+    public long getEvicted() {
+      return evicted;
+    }
+
+    public long getApproximateBytes() {
+      return approximateBytes;
+    }
+
+    public long getWaits() {
+      return waits;
+    }
+
+    public long getWaitNanos() {
+      return waitNanos;
+    }
+
+    public long getWaitTimeouts() {
+      return waitTimeouts;
+    }
+
+    @Override
+    public String toString() {
+      return "recorder: events=" + events + ", tenants=" + tenants + ", indexEntries=" + indexEntries
+          + ", pendingWaits=" + pendingWaits + ", evicted=" + evicted + ", ~" + (approximateBytes / 1024L) + " KiB"
+          + ", waits=" + waits + " (" + waitTimeouts + " timed out, avg " + (waits > 0L ? TimeUnit.NANOSECONDS.toMillis(waitNanos / waits) : 0L) + " ms)";
+    }
+  }
+
+  private final Logger logger = LoggerFactory.getLogger(IndexedEventRecorder.class);
+  private final Gson gson = new Gson();
+  private final long maxWait;
+  private final int maxEvents;
+  private final int maxEventsPerTenant;
+  private final long ttlMillis;
+
+  private final ConcurrentMap<EventKey, Slot> slots = new ConcurrentHashMap<>();
+  // may still hold events evicted through their tenant queue until they reach the head
+  private final ConcurrentLinkedDeque<RecordedEvent> history = new ConcurrentLinkedDeque<>();
+  private final AtomicInteger historyEntries = new AtomicInteger();
+  private final AtomicInteger historySize = new AtomicInteger();
+  private final ConcurrentMap<String, TenantHistory> tenantHistories = new ConcurrentHashMap<>();
+  private final AtomicLong retainedBytes = new AtomicLong();
+  private final LongAdder evicted = new LongAdder();
+  private final LongAdder waits = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final LongAdder waitTimeouts = new LongAdder();
+  private final ConcurrentMap<String, Queue<MatchWaiter<?>>> matchWaiters = new ConcurrentHashMap<>();
+  private final ThreadLocal<List<RecordedEvent>> batch = new ThreadLocal<>();
+  // null if the history has no time to live
+  private final ScheduledExecutorService expiry;
+
+  public IndexedEventRecorder(@Value("${demoserver.event.maxWait:60000}") final long maxWait,
+                              @Value("${demoserver.event.history.max:100000}") final int maxEvents,
+                              @Value("${demoserver.event.history.maxPerTenant:20000}") final int maxEventsPerTenant,
+                              @Value("${demoserver.event.history.ttl:60}") final long ttlMinutes) {
+    super();
+    this.maxWait = maxWait;
+    this.maxEvents = Math.max(1, maxEvents);
+    this.maxEventsPerTenant = Math.max(1, maxEventsPerTenant);
+    this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+    if (this.ttlMillis > 0L) {
+      this.expiry = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "event-history-expiry");
+        thread.setDaemon(true);
+        return thread;
+      });
+      final long period = Math.max(1000L, Math.min(this.ttlMillis / 4, TimeUnit.MINUTES.toMillis(1L)));
+      this.expiry.scheduleWithFixedDelay(() -> this.evictOldest(System.currentTimeMillis()), period, period, TimeUnit.MILLISECONDS);
+    } else {
+      this.expiry = null;
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (this.expiry != null) {
+      this.expiry.shutdownNow();
+    }
+  }
+
+  public <T> void event(final String tenant, final String operation, final String payload, final Class<T> clazz) {
+    final T payloadObject = this.read(payload, clazz);
+    final String tenantKey = tenant != null ? tenant : ANY_TENANT;
+    this.logger.debug("Received event '{}' for tenant '{}' with payload '{}'.", operation, tenantKey, payload);
+
+    final long approximateBytes = EVENT_OVERHEAD_BYTES + (payload != null ? 2L * payload.length() : 0L);
+    final RecordedEvent recordedEvent = new RecordedEvent(tenantKey, operation, payloadObject, approximateBytes);
+    final List<RecordedEvent> batch = this.batch.get();
+    if (batch != null) {
+      batch.add(recordedEvent);
+      return;
+    }
+
+    this.history.addLast(recordedEvent);
+    this.historyEntries.incrementAndGet();
+    this.historySize.incrementAndGet();
+    final TenantHistory tenantHistory = this.append(recordedEvent);
+    this.index(recordedEvent);
+    this.evictTenant(tenantHistory);
+    this.evictOldest(recordedEvent.recordedAt);
+  }
+
+  /**
+   * Records the events reported by the handlers the action runs on this thread in one pass: they
+   * are appended to the history together, waiters are woken once the whole batch is indexed, and
+   * the bounds are enforced once for the batch.
+   */
+  public void recordBatch(final Runnable action) {
+    final List<RecordedEvent> batch = new ArrayList<>();
+    this.batch.set(batch);
+    try {
+      action.run();
+    } finally {
+      this.batch.remove();
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    this.history.addAll(batch);
+    this.historyEntries.addAndGet(batch.size());
+    this.historySize.addAndGet(batch.size());
+    final Set<TenantHistory> tenants = new HashSet<>();
+    batch.forEach(recordedEvent -> tenants.add(this.append(recordedEvent)));
+    batch.forEach(this::index);
+    tenants.forEach(this::evictTenant);
+    this.evictOldest(System.currentTimeMillis());
+  }
+
+  public <T> boolean wait(final String operation, final T payload) throws InterruptedException {
+    final EventKey key = new EventKey(currentTenant(), operation, payload);
+    final Slot slot = this.acquireSlot(key);
+    try {
+      return this.await(slot.recorded, this.maxWait);
+    } finally {
+      this.releaseWaiter(key, slot);
+    }
+  }
+
+  /**
+   * Waits until an event has been recorded for each of the given payloads, or the timeout passed.
+   *
+   * @return the payloads for which no event was recorded, empty if all of them arrived
+   */
+  public <T> Set<T> waitForAll(final String operation, final Collection<T> payloads, final long timeoutMillis) throws InterruptedException {
+    final String tenant = currentTenant();
+    final Map<T, Slot> expected = new LinkedHashMap<>();
+    payloads.forEach(payload -> expected.computeIfAbsent(payload, key -> this.acquireSlot(new EventKey(tenant, operation, key))));
+
+    try {
+      this.await(CompletableFuture.allOf(expected.values().stream().map(slot -> slot.recorded).toArray(CompletableFuture[]::new)),
+          timeoutMillis);
+
+      final Set<T> missing = new LinkedHashSet<>();
+      expected.forEach((payload, slot) -> {
+        if (!slot.recorded.isDone()) {
+          missing.add(payload);
+        }
+      });
+      return missing;
+    } finally {
+      expected.forEach((payload, slot) -> this.releaseWaiter(new EventKey(tenant, operation, payload), slot));
+    }
+  }
+
+  public <T> Set<T> waitForAll(final String operation, final Collection<T> payloads) throws InterruptedException {
+    return this.waitForAll(operation, payloads, this.maxWait);
+  }
+
+  public <T> boolean waitForMatch(final String operation, final Function<T, Boolean> payloadMatcher) throws InterruptedException {
+    final MatchWaiter<T> waiter = new MatchWaiter<>(currentTenant(), payloadMatcher);
+    final Queue<MatchWaiter<?>> waiters = this.matchWaiters.computeIfAbsent(operation, key -> new ConcurrentLinkedQueue<>());
+    // register before scanning, so an event arriving in between is seen by one side or the other
+    waiters.add(waiter);
+    try {
+      this.history.forEach(recordedEvent -> {
+        if (recordedEvent.operation.equals(operation) && !recordedEvent.released.get()) {
+          waiter.offer(recordedEvent);
+        }
+      });
+      return this.await(waiter.matched, this.maxWait);
+    } finally {
+      waiters.remove(waiter);
+    }
+  }
+
+  /**
+   * Forgets all recorded events. Waits that are currently pending keep waiting for new events.
+   */
+  public void clear() {
+    RecordedEvent oldest;
+    while ((oldest = this.history.pollFirst()) != null) {
+      this.historyEntries.decrementAndGet();
+      this.release(oldest);
+    }
+    this.tenantHistories.values().forEach(IndexedEventRecorder::trim);
+  }
+
+  public Stats stats() {
+    int tenants = 0;
+    for (final TenantHistory tenantHistory : this.tenantHistories.values()) {
+      if (tenantHistory.size.get() > 0) {
+        tenants++;
+      }
+    }
+    long pendingWaits = 0L;
+    for (final Slot slot : this.slots.values()) {
+      if (!slot.recorded.isDone()) {
+        pendingWaits++;
+      }
+    }
+    return new Stats(this.historySize.get(), tenants, this.slots.size(), pendingWaits, this.evicted.sum(), this.retainedBytes.get(),
+        this.waits.sum(), this.waitNanos.sum(), this.waitTimeouts.sum());
+  }
+
+  private TenantHistory append(final RecordedEvent recordedEvent) {
+    final TenantHistory tenantHistory = this.tenantHistories.computeIfAbsent(recordedEvent.tenant, key -> new TenantHistory());
+    tenantHistory.events.add(recordedEvent);
+    tenantHistory.entries.incrementAndGet();
+    tenantHistory.size.incrementAndGet();
+    this.retainedBytes.addAndGet(recordedEvent.approximateBytes);
+    return tenantHistory;
+  }
+
+  private void index(final RecordedEvent recordedEvent) {
+    this.recordSlot(new EventKey(recordedEvent.tenant, recordedEvent.operation, recordedEvent.payload), recordedEvent);
+    if (!recordedEvent.tenant.equals(ANY_TENANT)) {
+      this.recordSlot(new EventKey(ANY_TENANT, recordedEvent.operation, recordedEvent.payload), recordedEvent);
+    }
+
+    final Queue<MatchWaiter<?>> waiters = this.matchWaiters.get(recordedEvent.operation);
+    if (waiters != null) {
+      waiters.forEach(waiter -> waiter.offer(recordedEvent));
+    }
+  }
+
+  private void evictTenant(final TenantHistory tenantHistory) {
+    while (tenantHistory.entries.get() > this.maxEventsPerTenant) {
+      final RecordedEvent oldest = tenantHistory.events.poll();
+      if (oldest == null) {
+        break;
+      }
+      tenantHistory.entries.decrementAndGet();
+      if (this.release(oldest)) {
+        this.evicted.increment();
+      }
+    }
+  }
+
+  /**
+   * Evicts from the head of the history while it holds more entries than allowed or the head has
+   * expired. Entries already evicted through their tenant queue only count against the bound.
+   */
+  private void evictOldest(final long now) {
+    RecordedEvent oldest;
+    while ((oldest = this.history.peekFirst()) != null
+        && (oldest.released.get() || this.historyEntries.get() > this.maxEvents
+            || (this.ttlMillis > 0L && now - oldest.recordedAt > this.ttlMillis))) {
+      if (this.history.removeFirstOccurrence(oldest)) {
+        this.historyEntries.decrementAndGet();
+        if (this.release(oldest)) {
+          this.evicted.increment();
+          trim(this.tenantHistories.get(oldest.tenant));
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops the events at the head of a tenant queue which have been evicted from the history. Both
+   * are in arrival order, so the event evicted from the history is at or near the head.
+   */
+  private static void trim(final TenantHistory tenantHistory) {
+    RecordedEvent oldest;
+    while ((oldest = tenantHistory.events.peek()) != null && oldest.released.get()) {
+      if (tenantHistory.events.remove(oldest)) {
+        tenantHistory.entries.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Drops the counters and index entries of an event which has been taken out of the history.
+   * Index entries of a payload which has been recorded again since stay in place.
+   */
+  private boolean release(final RecordedEvent recordedEvent) {
+    if (!recordedEvent.released.compareAndSet(false, true)) {
+      return false;
+    }
+    this.historySize.decrementAndGet();
+    this.tenantHistories.get(recordedEvent.tenant).size.decrementAndGet();
+    this.retainedBytes.addAndGet(-recordedEvent.approximateBytes);
+    this.releaseSlot(new EventKey(recordedEvent.tenant, recordedEvent.operation, recordedEvent.payload), recordedEvent);
+    if (!recordedEvent.tenant.equals(ANY_TENANT)) {
+      this.releaseSlot(new EventKey(ANY_TENANT, recordedEvent.operation, recordedEvent.payload), recordedEvent);
+    }
+    return true;
+  }
+
+  private void releaseSlot(final EventKey key, final RecordedEvent recordedEvent) {
+    this.slots.computeIfPresent(key, (ignored, slot) -> slot.latest == recordedEvent ? null : slot);
+  }
+
+  private <T> T read(final String payload, final Class<T> clazz) {
+    return this.gson.fromJson(payload, clazz);
+  }
+
+  private void recordSlot(final EventKey key, final RecordedEvent recordedEvent) {
+    // updated atomically with releaseSlot, so an eviction never drops the entry of a newer event
+    final Slot slot = this.slots.compute(key, (ignored, existing) -> {
+      final Slot target = existing != null ? existing : new Slot();
+      target.latest = recordedEvent;
+      return target;
+    });
+    slot.recorded.complete(null);
+  }
+
+  private Slot acquireSlot(final EventKey key) {
+    return this.slots.compute(key, (ignored, existing) -> {
+      final Slot target = existing != null ? existing : new Slot();
+      target.waiters++;
+      return target;
+    });
+  }
+
+  /**
+   * Drops the slot once its last waiter gave up on an event that never arrived, so timed out waits
+   * do not leave index entries behind. Slots of recorded events are released by the eviction.
+   */
+  private void releaseWaiter(final EventKey key, final Slot slot) {
+    this.slots.computeIfPresent(key, (ignored, existing) -> {
+      if (existing != slot) {
+        return existing;
+      }
+      existing.waiters--;
+      return existing.waiters == 0 && !existing.recorded.isDone() ? null : existing;
+    });
+  }
+
+  private boolean await(final CompletableFuture<Void> future, final long timeoutMillis) throws InterruptedException {
+    final long startedAt = System.nanoTime();
+    try {
+      future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+      return true;
+    } catch (final TimeoutException ex) {
+      this.waitTimeouts.increment();
+      return false;
+    } catch (final ExecutionException ex) {
+      throw new IllegalStateException(ex.getCause());
+    } finally {
+      this.waits.increment();
+      this.waitNanos.add(System.nanoTime() - startedAt);
+    }
+  }
+
+  private static String currentTenant() {
+    return TenantContextHolder.identifier().orElse(ANY_TENANT);
+  }
+
+  private static class RecordedEvent {
+    private final String tenant;
+    private final String operation;
+    private final Object payload;
+    private final long approximateBytes;
+    private final long recordedAt = System.currentTimeMillis();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private RecordedEvent(final String tenant, final String operation, final Object payload, final long approximateBytes) {
+      this.tenant = tenant;
+      this.operation = operation;
+      this.payload = payload;
+      this.approximateBytes = approximateBytes;
+    }
+  }
+
+  private static class TenantHistory {
+    private final Queue<RecordedEvent> events = new ConcurrentLinkedQueue<>();
+    // events in the queue, including those already evicted from the history
+    private final AtomicInteger entries = new AtomicInteger();
+    private final AtomicInteger size = new AtomicInteger();
+  }
+
+  private static class Slot {
+    private final CompletableFuture<Void> recorded = new CompletableFuture<>();
+    private volatile RecordedEvent latest;
+    // only changed inside a compute on the slot's key
+    private int waiters;
+  }
+
+  private static class MatchWaiter<T> {
+    private final String tenant;
+    private final Function<T, Boolean> payloadMatcher;
+    private final CompletableFuture<Void> matched = new CompletableFuture<>();
+
+    private MatchWaiter(final String tenant, final Function<T, Boolean> payloadMatcher) {
+      this.tenant = tenant;
+      this.payloadMatcher = payloadMatcher;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void offer(final RecordedEvent recordedEvent) {
+      if (this.matched.isDone()) {
+        return;
+      }
+      if (!this.tenant.equals(ANY_TENANT) && !this.tenant.equals(recordedEvent.tenant)) {
+        return;
+      }
+      try {
+        if (Boolean.TRUE.equals(this.payloadMatcher.apply((T) recordedEvent.payload))) {
+          this.matched.complete(null);
+        }
+      } catch (final ClassCastException ignored) {
+        // payload of a different type recorded under the same operation
+      }
+    }
+  }
+
+  private static class EventKey {
+    private final String tenant;
+    private final String operation;
+    private final Object payload;
+
+    private EventKey(final String tenant, final String operation, final Object payload) {
+      this.tenant = tenant;
+      this.operation = operation;
+      this.payload = payload;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final EventKey eventKey = (EventKey) o;
+      return Objects.equals(tenant, eventKey.tenant)
+          && Objects.equals(operation, eventKey.operation)
+          && Objects.equals(payload, eventKey.payload);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(tenant, operation, payload);
+    }
+  }
+}
@@ -20,9 +20,9 @@ package org.apache.fineract.cn.dev.listener;
 
 import org.apache.fineract.cn.notification.api.v1.events.NotificationEventConstants;
 import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
-import org.apache.fineract.cn.test.listener.EventRecorder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.support.JmsHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
@@ -30,19 +30,30 @@ import org.springframework.stereotype.Component;
 @Component
 public class NotificationListener {
 
-  private final EventRecorder eventRecorder;
+  private final IndexedEventRecorder eventRecorder;
+  private final EventBatcher events;
 
   @Autowired
-  public NotificationListener(final EventRecorder eventRecorder) {
+  public NotificationListener(final IndexedEventRecorder eventRecorder,
+                              final EventDispatcher eventDispatcher) {
     this.eventRecorder = eventRecorder;
+    this.events = eventDispatcher.destination(NotificationEventConstants.DESTINATION, NotificationEventConstants.SELECTOR_NAME, new EventRoutes()
+        .route(NotificationEventConstants.INITIALIZE, this::onInitialized));
   }
 
   @JmsListener(
       subscription = NotificationEventConstants.DESTINATION,
-      destination = NotificationEventConstants.DESTINATION,
-      selector = NotificationEventConstants.SELECTOR_INITIALIZE
+      destination = NotificationEventConstants.DESTINATION
   )
-  public void onInitialized(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+  public void onEvent(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+                      @Header(value = NotificationEventConstants.SELECTOR_NAME, required = false) final String operation,
+                      @Header(value = JmsHeaders.TIMESTAMP, required = false) final Long timestamp,
+                      @Header(value = EventReplay.REPLAY_HEADER, required = false) final String replay,
+                      final String payload) throws Exception {
+    this.events.submit(tenant, operation, payload, timestamp, replay != null);
+  }
+
+  public void onInitialized(final String tenant,
                             final String payload) {
     this.eventRecorder.event(tenant, NotificationEventConstants.INITIALIZE, payload, String.class);
   }
@@ -18,11 +18,12 @@
  */
 package org.apache.fineract.cn.dev.listener;
 
-import org.apache.fineract.cn.test.listener.EventRecorder;
+import org.apache.fineract.cn.portfolio.api.v1.events.CaseEvent;
 import org.apache.fineract.cn.portfolio.api.v1.events.EventConstants;
 import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.support.JmsHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
@@ -33,50 +34,55 @@ import org.springframework.stereotype.Component;
 @Component
 public class PortfolioListener {
 
-  private final EventRecorder eventRecorder;
+  private final IndexedEventRecorder eventRecorder;
+  private final EventBatcher events;
 
   @Autowired
-  public PortfolioListener(final EventRecorder eventRecorder) {
+  public PortfolioListener(final IndexedEventRecorder eventRecorder,
+                           final EventDispatcher eventDispatcher) {
     this.eventRecorder = eventRecorder;
+    this.events = eventDispatcher.destination(EventConstants.DESTINATION, EventConstants.SELECTOR_NAME, new EventRoutes()
+        .route(EventConstants.INITIALIZE, this::onInitialization)
+        .route(EventConstants.POST_PRODUCT, this::onCreateProduct)
+        .route(EventConstants.PUT_PRODUCT, this::onChangeProduct)
+        .route(EventConstants.PUT_PRODUCT_ENABLE, this::onEnableProduct)
+        .route(EventConstants.POST_CASE, this::onCreateCase));
   }
 
   @JmsListener(
           subscription = EventConstants.DESTINATION,
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_INITIALIZE
+          destination = EventConstants.DESTINATION
   )
-  public void onInitialization(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+  public void onEvent(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+                      @Header(value = EventConstants.SELECTOR_NAME, required = false) final String operation,
+                      @Header(value = JmsHeaders.TIMESTAMP, required = false) final Long timestamp,
+                      @Header(value = EventReplay.REPLAY_HEADER, required = false) final String replay,
+                      final String payload) throws Exception {
+    this.events.submit(tenant, operation, payload, timestamp, replay != null);
+  }
+
+  public void onInitialization(final String tenant,
                                final String payload) {
     this.eventRecorder.event(tenant, EventConstants.INITIALIZE, payload, String.class);
   }
 
-  @JmsListener(
-          subscription = EventConstants.DESTINATION,
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_POST_PRODUCT
-  )
-  public void onCreateProduct(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+  public void onCreateProduct(final String tenant,
                               final String payload) {
     this.eventRecorder.event(tenant, EventConstants.POST_PRODUCT, payload, String.class);
   }
 
-  @JmsListener(
-          subscription = EventConstants.DESTINATION,
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_PUT_PRODUCT
-  )
-  public void onChangeProduct(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+  public void onChangeProduct(final String tenant,
                               final String payload) {
     this.eventRecorder.event(tenant, EventConstants.PUT_PRODUCT, payload, String.class);
   }
 
-  @JmsListener(
-          subscription = EventConstants.DESTINATION,
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_PUT_PRODUCT_ENABLE
-  )
-  public void onEnableProduct(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant,
+  public void onEnableProduct(final String tenant,
                               final String payload) {
     this.eventRecorder.event(tenant, EventConstants.PUT_PRODUCT_ENABLE, payload, String.class);
   }
+
+  public void onCreateCase(final String tenant,
+                           final String payload) {
+    this.eventRecorder.event(tenant, EventConstants.POST_CASE, payload, CaseEvent.class);
+  }
 }
\ No newline at end of file
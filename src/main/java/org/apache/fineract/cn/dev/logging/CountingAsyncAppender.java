@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Asynchronous appender counting the events it drops in {@link DroppedLogEvents}: below the
+ * discarding threshold events up to INFO are discarded as in the logback {@link AsyncAppender}, and
+ * with neverBlock set events offered to a full queue are dropped instead of blocking the logging
+ * thread.
+ */
+public class CountingAsyncAppender extends AsyncAppender {
+
+  public CountingAsyncAppender() {
+    super();
+  }
+
+  @Override
+  protected void append(final ILoggingEvent eventObject) {
+    final boolean fullBefore = this.getRemainingCapacity() == 0;
+    super.append(eventObject);
+    // an event offered to a queue which was full before and after has been dropped, unless it was
+    // discarded and counted already; a worker taking an event in between makes this undercount
+    if (fullBefore && this.getRemainingCapacity() == 0
+        && !(this.getDiscardingThreshold() > 0 && super.isDiscardable(eventObject))) {
+      DroppedLogEvents.increment(this.getName(), "queueFull");
+    }
+  }
+
+  @Override
+  protected boolean isDiscardable(final ILoggingEvent event) {
+    // only asked once the queue is filled beyond the discarding threshold
+    final boolean discardable = super.isDiscardable(event);
+    if (discardable) {
+      DroppedLogEvents.increment(this.getName(), "discarded");
+    }
+    return discardable;
+  }
+}
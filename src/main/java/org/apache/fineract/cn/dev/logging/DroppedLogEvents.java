@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev.logging;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the log events the asynchronous appenders and the sampling filters did not pass on.
+ */
+public final class DroppedLogEvents {
+
+  private static final ConcurrentMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+  private DroppedLogEvents() {
+    super();
+  }
+
+  static void increment(final String source, final String reason) {
+    COUNTERS.computeIfAbsent(source + "/" + reason, key -> new LongAdder()).increment();
+  }
+
+  /**
+   * @return dropped events keyed by "source/reason", e.g. "ASYNC_FILE/queueFull"
+   */
+  public static Map<String, Long> snapshot() {
+    final Map<String, Long> snapshot = new TreeMap<>();
+    COUNTERS.forEach((key, counter) -> snapshot.put(key, counter.sum()));
+    return snapshot;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.dev.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passes on only one in keepOneIn events below WARN for each logger under the configured prefixes,
+ * so a noisy path cannot flood the appender. Other loggers and events from WARN up pass unchanged.
+ */
+public class SamplingFilter extends Filter<ILoggingEvent> {
+
+  private final List<String> loggerPrefixes = new ArrayList<>();
+  private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+  private int keepOneIn = 100;
+
+  public SamplingFilter() {
+    super();
+  }
+
+  /**
+   * @param loggers comma separated logger name prefixes
+   */
+  public void setLoggers(final String loggers) {
+    this.loggerPrefixes.clear();
+    for (final String logger : loggers.split(",")) {
+      if (!logger.trim().isEmpty()) {
+        this.loggerPrefixes.add(logger.trim());
+      }
+    }
+  }
+
+  public void setKeepOneIn(final int keepOneIn) {
+    this.keepOneIn = Math.max(1, keepOneIn);
+  }
+
+  @Override
+  public FilterReply decide(final ILoggingEvent event) {
+    if (event.getLevel().isGreaterOrEqual(Level.WARN) || !this.sampled(event.getLoggerName())) {
+      return FilterReply.NEUTRAL;
+    }
+    final long count = this.counters.computeIfAbsent(event.getLoggerName(), key -> new AtomicLong()).getAndIncrement();
+    if (count % this.keepOneIn == 0) {
+      return FilterReply.NEUTRAL;
+    }
+    DroppedLogEvents.increment(this.getName() != null ? this.getName() : "sampling", "sampled");
+    return FilterReply.DENY;
+  }
+
+  private boolean sampled(final String loggerName) {
+    for (final String prefix : this.loggerPrefixes) {
+      if (loggerName.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}